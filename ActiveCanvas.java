@@ -0,0 +1,121 @@
+import java.awt.*;
+import java.awt.image.BufferStrategy;
+import java.util.Locale;
+
+class ActiveCanvas extends Canvas implements GameLoop.Client {
+    private static final Color BACKGROUND = new Color(24, 26, 32);
+    private static final Color STATS_COLOR = new Color(150, 150, 160);
+    private static final Font STATS_FONT = new Font(Font.DIALOG, Font.PLAIN, 11);
+
+    private final Simulation sim;
+    private final KeyboardInput input;
+    private final GameRenderer renderer;
+    private final GameLoop loop;
+    private final int buffers;
+    private BufferStrategy strategy;
+
+    private long statsWindowStart;
+    private int statsFrames;
+    private long statsPresentNanos;
+    private long statsMaxPresentNanos;
+    // the line changes once a second, so it is rasterised once a second rather than every frame
+    private String statsLine;
+    private long statsWindows;
+    private TextLayer statsText;
+
+    ActiveCanvas(Simulation sim, ReplayPlayer replay, CoopClient net, AudioMixer audio, int buffers, int fps) {
+        this.sim = sim;
+        this.input = new KeyboardInput(sim, replay, net);
+        this.renderer = new GameRenderer(sim, fps);
+        renderer.setAudio(audio);
+        this.buffers = buffers;
+        setPreferredSize(new Dimension(GameRenderer.VIEW_WIDTH, GameRenderer.VIEW_HEIGHT));
+        setBackground(BACKGROUND);
+        setIgnoreRepaint(true);
+        setFocusable(true);
+        addKeyListener(input);
+
+        loop = new GameLoop(sim, this, fps);
+    }
+
+    void start() {
+        createBufferStrategy(buffers);
+        strategy = getBufferStrategy();
+        synchronized (sim) {
+            sim.start();
+        }
+        statsWindowStart = System.nanoTime();
+        loop.start();
+        requestFocusInWindow();
+    }
+
+    @Override
+    public boolean isPaused() {
+        return input.isPaused();
+    }
+
+    @Override
+    public void beforeTick() {
+        input.beforeTick();
+    }
+
+    @Override
+    public void whilePaused() {
+        input.whilePaused();
+    }
+
+    @Override
+    public boolean isRemote() {
+        return input.isRemote();
+    }
+
+    @Override
+    public void frame(double alpha) {
+        long begin = System.nanoTime();
+        do {
+            do {
+                Graphics2D g2 = (Graphics2D) strategy.getDrawGraphics();
+                try {
+                    paintFrame(g2, alpha);
+                } finally {
+                    g2.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+            Toolkit.getDefaultToolkit().sync();
+        } while (strategy.contentsLost());
+        recordFrame(begin, System.nanoTime());
+    }
+
+    // one frame into whatever buffer; AllocationBudget measures this too
+    void paintFrame(Graphics2D g2, double alpha) {
+        g2.setColor(BACKGROUND);
+        g2.fillRect(0, 0, GameRenderer.VIEW_WIDTH, GameRenderer.VIEW_HEIGHT);
+        renderer.render(g2, alpha, input.isPaused());
+        drawFrameStats(g2);
+    }
+
+    void recordFrame(long begin, long end) {
+        long present = end - begin;
+        statsFrames++;
+        statsPresentNanos += present;
+        statsMaxPresentNanos = Math.max(statsMaxPresentNanos, present);
+        long window = end - statsWindowStart;
+        if (window >= 1_000_000_000L) {
+            statsLine = String.format(Locale.ROOT, "%d buffers | %.0f fps | present %.2f ms (max %.2f)",
+                    buffers, statsFrames * 1e9 / window, statsPresentNanos / 1e6 / statsFrames, statsMaxPresentNanos / 1e6);
+            statsWindows++;
+            statsWindowStart = end;
+            statsFrames = 0;
+            statsPresentNanos = 0;
+            statsMaxPresentNanos = 0;
+        }
+    }
+
+    private void drawFrameStats(Graphics2D g2) {
+        if (statsLine == null) return;
+        if (statsText == null) statsText = new TextLayer(g2.getDeviceConfiguration(), STATS_FONT, STATS_COLOR);
+        if (statsText.isStale(statsWindows)) statsText.render(statsWindows, statsLine);
+        statsText.draw(g2, GameRenderer.VIEW_WIDTH - 300, GameRenderer.VIEW_HEIGHT - 16);
+    }
+}
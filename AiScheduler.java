@@ -0,0 +1,26 @@
+class AiScheduler {
+    private final MonsterStore monsters;
+    private final int period;
+
+    AiScheduler(MonsterStore monsters, int period) {
+        this.monsters = monsters;
+        this.period = Math.max(1, period);
+    }
+
+    // round-robin by monster id, so about count / period monsters re-plan each tick and a wave
+    // spawned in one burst still spreads its searches over the following ticks
+    boolean isDue(int slot, long tick) {
+        return monsters.replan[slot] || (monsters.id(slot) + tick) % period == 0;
+    }
+
+    void planned(int slot) {
+        monsters.replan[slot] = false;
+    }
+
+    void heroDied(int heroId) {
+        MonsterStore ms = monsters;
+        for (int m = 0; m < ms.count; m++) {
+            if (ms.target[m] == heroId) ms.replan[m] = true;
+        }
+    }
+}
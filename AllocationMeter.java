@@ -0,0 +1,23 @@
+import java.lang.management.ManagementFactory;
+
+// bytes allocated so far by the calling thread, from the JVM's per-thread TLAB accounting
+class AllocationMeter {
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    static boolean isSupported() {
+        return THREADS != null;
+    }
+
+    // 0 when the JVM can't tell; callers only ever look at differences
+    static long allocated() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) return null;
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+}
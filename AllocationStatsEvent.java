@@ -0,0 +1,31 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("slicedice.AllocationStats")
+@Label("Allocation Statistics")
+@Category("Slice & Dice")
+@Description("Per-second summary of the bytes allocated by each tick or frame")
+@StackTrace(false)
+class AllocationStatsEvent extends jdk.jfr.Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Samples")
+    long count;
+
+    @Label("p50")
+    @DataAmount(DataAmount.BYTES)
+    long p50;
+
+    @Label("p99")
+    @DataAmount(DataAmount.BYTES)
+    long p99;
+
+    @Label("Max")
+    @DataAmount(DataAmount.BYTES)
+    long max;
+}
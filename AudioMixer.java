@@ -0,0 +1,248 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+// software mixer over a SoundBank: play() only queues, one mixing thread starts the queued voices,
+// sums every playing voice into a block and writes it to a small SourceDataLine buffer, whose
+// blocking write paces the thread. Without a line, render() runs the same mixing into a buffer
+class AudioMixer implements Runnable {
+    static final int CHANNELS = 2;
+    // frames per pass, under 6 ms at 44.1 kHz
+    static final int BLOCK = 256;
+    // the line holds this many blocks, about 23 ms, which bounds the latency of a new sound
+    private static final int LINE_BLOCKS = 4;
+    // more of one sound at once only makes it louder, so the oldest is cut instead
+    private static final int PER_SOUND = 4;
+    private static final AudioFormat FORMAT = new AudioFormat(SoundBank.SAMPLE_RATE, 16, CHANNELS, true, false);
+
+    private final SoundBank bank;
+    private final int maxVoices;
+
+    // voices, only touched by whoever mixes
+    private final int[] voiceSound;
+    private final int[] voicePosition;
+    private final float[] voiceLeft;
+    private final float[] voiceRight;
+    private final long[] voiceStart;
+    private int voiceCount;
+    private long started;
+
+    // single producer (whoever drains the combat events, under the simulation's lock), single
+    // consumer (the mixer); laid out as InputQueue
+    private final int mask;
+    private final int[] queuedSound;
+    private final float[] queuedLeft;
+    private final float[] queuedRight;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private long cachedHead;
+    private volatile long dropped;
+    private volatile long stolen;
+
+    private final int[] mixLeft = new int[BLOCK];
+    private final int[] mixRight = new int[BLOCK];
+    private final byte[] bytes = new byte[BLOCK * CHANNELS * 2];
+    volatile float volume = 0.6f;
+
+    private SourceDataLine line;
+    private volatile boolean running;
+    private Thread thread;
+
+    AudioMixer(SoundBank bank, int maxVoices) {
+        this.bank = bank;
+        this.maxVoices = maxVoices;
+        voiceSound = new int[maxVoices];
+        voicePosition = new int[maxVoices];
+        voiceLeft = new float[maxVoices];
+        voiceRight = new float[maxVoices];
+        voiceStart = new long[maxVoices];
+        int size = Integer.highestOneBit(Math.max(2, maxVoices * 4 - 1)) << 1;
+        mask = size - 1;
+        queuedSound = new int[size];
+        queuedLeft = new float[size];
+        queuedRight = new float[size];
+    }
+
+    // null when there is no audio device, the game then runs silent
+    static AudioMixer open(SoundBank bank, int maxVoices) {
+        SourceDataLine line;
+        try {
+            line = AudioSystem.getSourceDataLine(FORMAT);
+            line.open(FORMAT, BLOCK * LINE_BLOCKS * CHANNELS * 2);
+        } catch (LineUnavailableException | IllegalArgumentException | SecurityException e) {
+            System.err.println("No audio: " + e.getMessage());
+            return null;
+        }
+        AudioMixer mixer = new AudioMixer(bank, maxVoices);
+        mixer.start(line);
+        return mixer;
+    }
+
+    void start(SourceDataLine line) {
+        this.line = line;
+        line.start();
+        running = true;
+        thread = new Thread(this, "audio-mixer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        if (thread == null) return;
+        try {
+            thread.join(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        line.stop();
+        line.close();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            mix(BLOCK);
+            int n = 0;
+            for (int i = 0; i < BLOCK; i++) {
+                n = put(n, clip(mixLeft[i]));
+                n = put(n, clip(mixRight[i]));
+            }
+            line.write(bytes, 0, n);
+        }
+    }
+
+    // never blocks; volume 0..1, pan -1 (left) to 1 (right). False when the queue is full
+    boolean play(int sound, double soundVolume, double pan) {
+        long t = tail.get();
+        if (t - cachedHead > mask) {
+            cachedHead = head.get();
+            if (t - cachedHead > mask) {
+                dropped++;
+                return false;
+            }
+        }
+        // equal power, so a sound keeps its loudness as it pans
+        double angle = (Math.max(-1, Math.min(1, pan)) + 1) * Math.PI / 4;
+        int i = (int) t & mask;
+        queuedSound[i] = sound;
+        queuedLeft[i] = (float) (soundVolume * Math.cos(angle));
+        queuedRight[i] = (float) (soundVolume * Math.sin(angle));
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    // offline: mixes frames of interleaved stereo into out, exactly as the mixing thread would;
+    // only for a mixer that was never started
+    void render(short[] out, int frames) {
+        for (int done = 0; done < frames; ) {
+            int n = Math.min(BLOCK, frames - done);
+            mix(n);
+            for (int i = 0; i < n; i++) {
+                out[(done + i) * CHANNELS] = clip(mixLeft[i]);
+                out[(done + i) * CHANNELS + 1] = clip(mixRight[i]);
+            }
+            done += n;
+        }
+    }
+
+    int voices() {
+        return voiceCount;
+    }
+
+    long dropped() {
+        return dropped;
+    }
+
+    long stolen() {
+        return stolen;
+    }
+
+    private void mix(int frames) {
+        startQueued();
+        Arrays.fill(mixLeft, 0, frames, 0);
+        Arrays.fill(mixRight, 0, frames, 0);
+        for (int v = 0; v < voiceCount; ) {
+            short[] pcm = bank.samples[voiceSound[v]];
+            int position = voicePosition[v];
+            int n = Math.min(frames, pcm.length - position);
+            float left = voiceLeft[v];
+            float right = voiceRight[v];
+            for (int i = 0; i < n; i++) {
+                int s = pcm[position + i];
+                mixLeft[i] += (int) (s * left);
+                mixRight[i] += (int) (s * right);
+            }
+            position += n;
+            if (position < pcm.length) {
+                voicePosition[v] = position;
+                v++;
+            } else {
+                removeVoice(v);
+            }
+        }
+    }
+
+    private void startQueued() {
+        long h = head.get();
+        long t = tail.get();
+        for (long n = h; n < t; n++) {
+            int i = (int) n & mask;
+            startVoice(queuedSound[i], queuedLeft[i], queuedRight[i]);
+        }
+        head.lazySet(t);
+    }
+
+    // past PER_SOUND copies of the sound, or maxVoices in all, the oldest such voice is stolen
+    private void startVoice(int sound, float left, float right) {
+        int same = 0;
+        int oldestSame = -1;
+        int oldest = -1;
+        for (int v = 0; v < voiceCount; v++) {
+            if (oldest < 0 || voiceStart[v] < voiceStart[oldest]) oldest = v;
+            if (voiceSound[v] != sound) continue;
+            same++;
+            if (oldestSame < 0 || voiceStart[v] < voiceStart[oldestSame]) oldestSame = v;
+        }
+        int v;
+        if (same >= PER_SOUND) {
+            v = oldestSame;
+            stolen++;
+        } else if (voiceCount == maxVoices) {
+            v = oldest;
+            stolen++;
+        } else {
+            v = voiceCount++;
+        }
+        voiceSound[v] = sound;
+        voicePosition[v] = 0;
+        voiceLeft[v] = left;
+        voiceRight[v] = right;
+        voiceStart[v] = started++;
+    }
+
+    private void removeVoice(int v) {
+        int last = --voiceCount;
+        voiceSound[v] = voiceSound[last];
+        voicePosition[v] = voicePosition[last];
+        voiceLeft[v] = voiceLeft[last];
+        voiceRight[v] = voiceRight[last];
+        voiceStart[v] = voiceStart[last];
+    }
+
+    private short clip(int sample) {
+        int s = (int) (sample * volume);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, s));
+    }
+
+    // little-endian, as FORMAT says
+    private int put(int n, short sample) {
+        bytes[n] = (byte) sample;
+        bytes[n + 1] = (byte) (sample >> 8);
+        return n + 2;
+    }
+}
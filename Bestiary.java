@@ -0,0 +1,151 @@
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// heroes, monster kinds and spawn rules, read from bestiary.txt on the classpath; one instance is
+// shared by every game and nothing in it changes after loading
+class Bestiary {
+    static final String RESOURCE = "/bestiary.txt";
+    // combat sums damage per hero in a 16-int line per chunk
+    static final int MAX_HEROES = 16;
+    // kinds travel as a byte in snapshots and state messages
+    static final int MAX_MONSTERS = 127;
+
+    private static Bestiary standard;
+
+    final HeroArchetype[] heroes;
+    final MonsterArchetype[] monsters;
+    // in file order: from wave spawnFrom[r] on, every spawnEvery[r]-th spawn is kind spawnKind[r]
+    final int[] spawnKind;
+    final int[] spawnFrom;
+    final int[] spawnEvery;
+    // last spawn of a boss wave, -1 when there is none
+    final int boss;
+
+    private Bestiary(List<HeroArchetype> heroes, List<MonsterArchetype> monsters, List<int[]> spawns, int boss) {
+        this.heroes = heroes.toArray(new HeroArchetype[0]);
+        this.monsters = monsters.toArray(new MonsterArchetype[0]);
+        spawnKind = new int[spawns.size()];
+        spawnFrom = new int[spawns.size()];
+        spawnEvery = new int[spawns.size()];
+        for (int r = 0; r < spawns.size(); r++) {
+            spawnKind[r] = spawns.get(r)[0];
+            spawnFrom[r] = spawns.get(r)[1];
+            spawnEvery[r] = spawns.get(r)[2];
+        }
+        this.boss = boss;
+    }
+
+    static synchronized Bestiary standard() {
+        if (standard == null) {
+            InputStream in = Bestiary.class.getResourceAsStream(RESOURCE);
+            if (in == null) throw new IllegalStateException(RESOURCE + " is not on the classpath");
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                standard = parse(reader, RESOURCE.substring(1));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return standard;
+    }
+
+    static Bestiary parse(Reader reader, String source) throws IOException {
+        List<HeroArchetype> heroes = new ArrayList<>();
+        List<MonsterArchetype> monsters = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<int[]> spawns = new ArrayList<>();
+        int boss = -1;
+
+        BufferedReader in = new BufferedReader(reader);
+        int lineNumber = 0;
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if (comment >= 0) line = line.substring(0, comment);
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            String[] f = line.split("\\s+");
+            String where = source + ":" + lineNumber + ": ";
+            try {
+                switch (f[0]) {
+                    case "hero":
+                        expect(f, 10);
+                        heroes.add(new HeroArchetype(f[1], HeroKind.valueOf(f[2]), AbilityType.valueOf(f[3]),
+                                Double.parseDouble(f[4]), Double.parseDouble(f[5]), Double.parseDouble(f[6]),
+                                Integer.parseInt(f[7]), Integer.parseInt(f[8]), Double.parseDouble(f[9])));
+                        break;
+                    case "monster":
+                        expect(f, 11);
+                        if (names.contains(f[1])) throw new IllegalArgumentException("monster " + f[1] + " is already defined");
+                        names.add(f[1]);
+                        monsters.add(new MonsterArchetype(f[1], Double.parseDouble(f[2]), Double.parseDouble(f[3]),
+                                Double.parseDouble(f[4]), Double.parseDouble(f[5]), Double.parseDouble(f[6]),
+                                Double.parseDouble(f[7]), Double.parseDouble(f[8]), new Color(Integer.parseInt(f[9], 16)),
+                                MonsterArchetype.Shape.valueOf(f[10].toUpperCase(Locale.ROOT))));
+                        break;
+                    case "spawn":
+                        expect(f, 4);
+                        int from = Integer.parseInt(f[2]);
+                        int every = Integer.parseInt(f[3]);
+                        if (from < 1 || every < 1) throw new IllegalArgumentException("first wave and every must be at least 1");
+                        spawns.add(new int[] {kind(names, f[1]), from, every});
+                        break;
+                    case "boss":
+                        expect(f, 2);
+                        boss = kind(names, f[1]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown entry " + f[0]);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(where + e.getMessage(), e);
+            }
+        }
+
+        if (heroes.isEmpty() || heroes.size() > MAX_HEROES) {
+            throw new IllegalArgumentException(source + ": needs 1 to " + MAX_HEROES + " heroes, found " + heroes.size());
+        }
+        if (monsters.size() > MAX_MONSTERS) {
+            throw new IllegalArgumentException(source + ": at most " + MAX_MONSTERS + " monsters, found " + monsters.size());
+        }
+        // a rule from wave 1 matching every spawn gives each spawn a kind before the others override it
+        boolean coversWaveOne = false;
+        for (int[] s : spawns) {
+            if (s[1] == 1 && s[2] == 1) coversWaveOne = true;
+        }
+        if (!coversWaveOne) throw new IllegalArgumentException(source + ": needs a spawn rule from wave 1 for every spawn");
+        return new Bestiary(heroes, monsters, spawns, boss);
+    }
+
+    // index of the monster kind with this name
+    int monster(String name) {
+        for (int k = 0; k < monsters.length; k++) {
+            if (monsters[k].name.equals(name)) return k;
+        }
+        throw new IllegalArgumentException("Unknown monster: " + name);
+    }
+
+    SpawnTable compile(WaveRules rules, int wave) {
+        return new SpawnTable(this, rules, wave);
+    }
+
+    private static int kind(List<String> names, String name) {
+        int kind = names.indexOf(name);
+        if (kind < 0) throw new IllegalArgumentException("monster " + name + " is not defined above");
+        return kind;
+    }
+
+    private static void expect(String[] fields, int count) {
+        if (fields.length != count) {
+            throw new IllegalArgumentException(fields[0] + " takes " + (count - 1) + " values, found " + (fields.length - 1));
+        }
+    }
+}
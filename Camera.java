@@ -0,0 +1,44 @@
+class Camera {
+    // higher is snappier; the camera closes about 1 - e^(-FOLLOW_RATE * dt) of the gap each frame
+    private static final double FOLLOW_RATE = 8;
+
+    final int viewWidth;
+    final int viewHeight;
+    private final double worldWidth;
+    private final double worldHeight;
+    // top-left corner of the view in world coordinates
+    double x;
+    double y;
+    private long lastNanos;
+
+    Camera(int viewWidth, int viewHeight, double worldWidth, double worldHeight) {
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+        this.worldWidth = worldWidth;
+        this.worldHeight = worldHeight;
+    }
+
+    void follow(double targetX, double targetY) {
+        long now = System.nanoTime();
+        double tx = clamp(targetX - viewWidth / 2.0, worldWidth - viewWidth);
+        double ty = clamp(targetY - viewHeight / 2.0, worldHeight - viewHeight);
+        if (lastNanos == 0) {
+            x = tx;
+            y = ty;
+        } else {
+            double dt = Math.min(0.25, (now - lastNanos) / 1e9);
+            double k = 1 - Math.exp(-FOLLOW_RATE * dt);
+            x += (tx - x) * k;
+            y += (ty - y) * k;
+        }
+        lastNanos = now;
+    }
+
+    boolean isVisible(double px, double py, double margin) {
+        return px + margin >= x && px - margin <= x + viewWidth && py + margin >= y && py - margin <= y + viewHeight;
+    }
+
+    private static double clamp(double v, double max) {
+        return Math.max(0, Math.min(max, v));
+    }
+}
@@ -0,0 +1,93 @@
+// combat as it happens, for whatever wants to watch it without adding work to the loops that apply
+// it: the simulation appends, one reader drains once per frame. Both sides run under the
+// simulation's lock, so this is a plain ring; with no reader, or one that falls behind, the oldest
+// events are overwritten. Nothing here feeds back into the simulation
+class CombatEvents {
+    // hero hit monster for amount; kind is the monster's
+    static final int DAMAGE = 1;
+    // hero's hit killed the monster
+    static final int KILL = 2;
+    // hero stunned the monster
+    static final int STUN = 3;
+    // hero used its ability, kind is the AbilityType ordinal
+    static final int ABILITY = 4;
+    // monsters dealt hero amount this tick, summed
+    static final int HERO_HIT = 5;
+    static final int HERO_DOWN = 6;
+    // a projectile burst at x, y; hero is -1
+    static final int EXPLOSION = 7;
+
+    interface Handler {
+        void event(int type, long tick, int hero, int monster, int kind, int amount, double x, double y);
+    }
+
+    private final int mask;
+    private final byte[] type;
+    private final long[] tick;
+    private final int[] hero;
+    // monster id, -1 when the event has none
+    private final int[] monster;
+    private final int[] kind;
+    private final int[] amount;
+    private final float[] x;
+    private final float[] y;
+    private long head;
+    private long tail;
+    long overwritten;
+    // the tick being simulated, stamped on everything added during it
+    long now;
+
+    CombatEvents(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        type = new byte[size];
+        tick = new long[size];
+        hero = new int[size];
+        monster = new int[size];
+        kind = new int[size];
+        amount = new int[size];
+        x = new float[size];
+        y = new float[size];
+    }
+
+    void add(int eType, int eHero, int eMonster, int eKind, int eAmount, double ex, double ey) {
+        if (tail - head > mask) {
+            head++;
+            overwritten++;
+        }
+        int i = (int) tail & mask;
+        type[i] = (byte) eType;
+        tick[i] = now;
+        hero[i] = eHero;
+        monster[i] = eMonster;
+        kind[i] = eKind;
+        amount[i] = eAmount;
+        x[i] = (float) ex;
+        y[i] = (float) ey;
+        tail++;
+    }
+
+    // call after taking amount off the monster's hp
+    void monsterHit(int eHero, MonsterStore ms, int slot, int eAmount, int hpBefore) {
+        add(DAMAGE, eHero, ms.id(slot), ms.kind[slot], eAmount, ms.x[slot], ms.y[slot]);
+        if (hpBefore > 0 && ms.hp[slot] <= 0) add(KILL, eHero, ms.id(slot), ms.kind[slot], 0, ms.x[slot], ms.y[slot]);
+    }
+
+    int drain(Handler handler) {
+        long h = head;
+        for (long n = h; n < tail; n++) {
+            int i = (int) n & mask;
+            handler.event(type[i], tick[i], hero[i], monster[i], kind[i], amount[i], x[i], y[i]);
+        }
+        head = tail;
+        return (int) (tail - h);
+    }
+
+    int size() {
+        return (int) (tail - head);
+    }
+
+    void clear() {
+        head = tail;
+    }
+}
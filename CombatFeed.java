@@ -0,0 +1,211 @@
+import java.awt.*;
+
+// what the renderer shows of CombatEvents: damage numbers rising from hits, a kill feed and damage
+// per second for each hero. Drained once per frame under the simulation's lock; numbers, feed lines
+// and labels all live in fixed slots, so heavy combat makes no garbage
+class CombatFeed {
+    private static final int NUMBERS = 256;
+    private static final double NUMBER_SECONDS = 0.8;
+    private static final double NUMBER_RISE = 28;
+    private static final int FEED_LINES = 5;
+    private static final double FEED_SECONDS = 4;
+    private static final int DPS_SECONDS = 5;
+    private static final int TICKS_PER_SECOND = 60;
+    private static final Color HURT = new Color(255, 90, 90);
+    private static final Color DOWN = new Color(255, 200, 200);
+    private static final Font NUMBER_FONT = new Font(Font.DIALOG, Font.BOLD, 13);
+    private static final Font FEED_FONT = new Font(Font.DIALOG, Font.PLAIN, 12);
+    private static final AlphaComposite[] FADES = new AlphaComposite[16];
+
+    static {
+        for (int i = 0; i < FADES.length; i++) {
+            FADES[i] = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (i + 1) / (float) FADES.length);
+        }
+    }
+
+    private final Simulation sim;
+    private final GlyphCache numberGlyphs;
+    private final GlyphCache feedGlyphs;
+    private final CombatEvents.Handler handler = this::event;
+    // sees every event as it is drained, the sounds for instance
+    CombatEvents.Handler listener;
+    // colour index of hits taken by heroes; heroes' own hits use their id
+    private final int hurtColor;
+    private final int kinds;
+
+    // a ring: when every slot is showing, the oldest number makes way
+    private final float[] numberX = new float[NUMBERS];
+    private final float[] numberY = new float[NUMBERS];
+    private final int[] numberValue = new int[NUMBERS];
+    private final long[] numberTick = new long[NUMBERS];
+    private final int[] numberColor = new int[NUMBERS];
+    private final int[] numberMonster = new int[NUMBERS];
+    private int nextNumber;
+    private int lastNumber = -1;
+
+    // newest first; label keys into feedGlyphs
+    private final int[] feedLabel = new int[FEED_LINES];
+    private final long[] feedTick = new long[FEED_LINES];
+    private int feedCount;
+
+    // damage per hero in each of the last DPS_SECONDS seconds, folded in once per frame
+    private final int[] frameDamage;
+    private final int[] secondDamage;
+    private final long[] secondOf;
+
+    CombatFeed(Simulation sim, GraphicsConfiguration gc) {
+        this.sim = sim;
+        int heroes = sim.heroById.length;
+        kinds = sim.bestiary.monsters.length;
+        Color[] colors = new Color[heroes + 1];
+        for (int i = 0; i < heroes; i++) {
+            colors[i] = sim.heroById[i].color;
+        }
+        hurtColor = heroes;
+        colors[hurtColor] = HURT;
+        numberGlyphs = new GlyphCache(gc, NUMBER_FONT, colors);
+        feedGlyphs = new GlyphCache(gc, FEED_FONT, new Color[] {Color.WHITE});
+        frameDamage = new int[heroes];
+        secondDamage = new int[heroes * DPS_SECONDS];
+        secondOf = new long[heroes * DPS_SECONDS];
+    }
+
+    void drain() {
+        lastNumber = -1;
+        sim.events.drain(handler);
+        long second = sim.tickCount / TICKS_PER_SECOND;
+        for (int h = 0; h < frameDamage.length; h++) {
+            if (frameDamage[h] == 0) continue;
+            int i = h * DPS_SECONDS + (int) (second % DPS_SECONDS);
+            if (secondOf[i] != second) {
+                secondOf[i] = second;
+                secondDamage[i] = 0;
+            }
+            secondDamage[i] += frameDamage[h];
+            frameDamage[h] = 0;
+        }
+    }
+
+    private void event(int type, long tick, int hero, int monster, int kind, int amount, double x, double y) {
+        if (listener != null) listener.event(type, tick, hero, monster, kind, amount, x, y);
+        switch (type) {
+            case CombatEvents.DAMAGE:
+                frameDamage[hero] += amount;
+                addNumber(tick, hero, monster, amount, x, y);
+                break;
+            case CombatEvents.HERO_HIT:
+                addNumber(tick, hurtColor, -1, amount, x, y - 24);
+                break;
+            case CombatEvents.KILL:
+                addFeedLine(tick, killLabel(hero, kind));
+                break;
+            case CombatEvents.HERO_DOWN:
+                addFeedLine(tick, killLabel(hero, kinds));
+                break;
+            default:
+                break;
+        }
+    }
+
+    // hits on one monster in the same tick, a piercing volley's say, show as one number
+    private void addNumber(long tick, int color, int monster, int amount, double x, double y) {
+        int last = lastNumber;
+        if (last >= 0 && monster >= 0 && numberMonster[last] == monster && numberTick[last] == tick) {
+            numberValue[last] += amount;
+            return;
+        }
+        int i = nextNumber;
+        nextNumber = (i + 1) % NUMBERS;
+        numberX[i] = (float) x;
+        numberY[i] = (float) y;
+        numberValue[i] = amount;
+        numberTick[i] = tick;
+        numberColor[i] = color;
+        numberMonster[i] = monster;
+        lastNumber = i;
+    }
+
+    private void addFeedLine(long tick, int label) {
+        int n = Math.min(feedCount, FEED_LINES - 1);
+        System.arraycopy(feedLabel, 0, feedLabel, 1, n);
+        System.arraycopy(feedTick, 0, feedTick, 1, n);
+        feedLabel[0] = label;
+        feedTick[0] = tick;
+        feedCount = n + 1;
+    }
+
+    // kind == kinds is the hero going down
+    private int killLabel(int hero, int kind) {
+        int key = hero * (kinds + 1) + kind;
+        if (!feedGlyphs.hasLabel(key)) {
+            Hero h = sim.heroById[hero];
+            if (kind == kinds) {
+                feedGlyphs.label(key, h.name + " is down", DOWN);
+            } else {
+                feedGlyphs.label(key, h.name + " killed " + sim.bestiary.monsters[kind].name, h.color);
+            }
+        }
+        return key;
+    }
+
+    private double age(long tick, double alpha) {
+        return (sim.tickCount + alpha - tick) * Simulation.STEP;
+    }
+
+    // world coordinates; the caller has translated to the camera
+    void drawNumbers(Graphics2D g2, Camera camera, double alpha, int margin) {
+        Composite old = g2.getComposite();
+        for (int i = 0; i < NUMBERS; i++) {
+            if (numberValue[i] <= 0) continue;
+            double age = age(numberTick[i], alpha);
+            // older than its time, or from a future a rewind undid
+            if (age >= NUMBER_SECONDS || age < 0) {
+                numberValue[i] = 0;
+                continue;
+            }
+            double x = numberX[i];
+            double y = numberY[i] - NUMBER_RISE * age / NUMBER_SECONDS;
+            if (!camera.isVisible(x, y, margin)) continue;
+            int fade = (int) ((1 - age / NUMBER_SECONDS) * FADES.length);
+            g2.setComposite(FADES[Math.max(0, Math.min(FADES.length - 1, fade))]);
+            int w = numberGlyphs.numberWidth(numberValue[i]);
+            numberGlyphs.drawNumber(g2, numberValue[i], (int) x - w / 2, (int) y - 18, numberColor[i]);
+        }
+        g2.setComposite(old);
+    }
+
+    // newest at the top, right-aligned to right
+    void drawKillFeed(Graphics2D g2, int right, int top, double alpha) {
+        for (int i = 0; i < feedCount; i++) {
+            double age = age(feedTick[i], alpha);
+            if (age >= FEED_SECONDS || age < 0) {
+                feedCount = i;
+                break;
+            }
+            int key = feedLabel[i];
+            feedGlyphs.drawLabel(g2, key, right - feedGlyphs.labelWidth(key), top + i * 16);
+        }
+    }
+
+    // one line per living hero: its name and its damage per second over the last few seconds
+    void drawDps(Graphics2D g2, int right, int bottom) {
+        long second = sim.tickCount / TICKS_PER_SECOND;
+        int y = bottom - (sim.heroes.size() - 1) * 16;
+        for (int n = 0; n < sim.heroes.size(); n++) {
+            Hero h = sim.heroes.get(n);
+            int total = 0;
+            for (int s = 0; s < DPS_SECONDS; s++) {
+                int i = h.id * DPS_SECONDS + s;
+                long ago = second - secondOf[i];
+                if (ago >= 0 && ago < DPS_SECONDS) total += secondDamage[i];
+            }
+            int dps = total / DPS_SECONDS;
+            int key = frameDamage.length * (kinds + 1) + h.id;
+            if (!feedGlyphs.hasLabel(key)) feedGlyphs.label(key, h.name + " DPS ", h.color);
+            int w = numberGlyphs.numberWidth(dps);
+            numberGlyphs.drawNumber(g2, dps, right - w, y, h.id);
+            feedGlyphs.drawLabel(g2, key, right - w - feedGlyphs.labelWidth(key), y);
+            y += 16;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntPredicate;
+
+class CombatResolver {
+    private static final int MIN_CHUNK = 1024;
+    private static final int CHUNKS_PER_THREAD = 4;
+    // each chunk's damage totals sit on their own cache line
+    private static final int DAMAGE_STRIDE = 16;
+
+    private final MonsterStore monsters;
+    private final Hero[] heroById;
+    private final SpatialGrid monsterGrid;
+    private final SpatialGrid heroGrid;
+    private final FlowField flow;
+    private final AiScheduler ai;
+    private final CombatEvents events;
+    private long tick;
+
+    // hero state as it was before the monsters act, indexed by hero id
+    private final double[] heroX;
+    private final double[] heroY;
+    private final int[] heroHp;
+    private final IntPredicate monsterAlive;
+    private final IntPredicate heroAlive;
+
+    // ForkJoinPool for the monster stage; null runs it on the calling thread
+    ForkJoinPool pool;
+    private int chunkSize;
+    private int chunkCount;
+    // one chunk's worth up front, so a serial game never grows it
+    private int[] damage = new int[DAMAGE_STRIDE];
+    private Chunk[] chunks = new Chunk[0];
+    private final MonsterStage stage = new MonsterStage();
+
+    CombatResolver(MonsterStore monsters, Hero[] heroById, SpatialGrid monsterGrid, SpatialGrid heroGrid, FlowField flow, AiScheduler ai,
+                   CombatEvents events) {
+        this.monsters = monsters;
+        this.heroById = heroById;
+        this.monsterGrid = monsterGrid;
+        this.heroGrid = heroGrid;
+        this.flow = flow;
+        this.ai = ai;
+        this.events = events;
+        heroX = new double[heroById.length];
+        heroY = new double[heroById.length];
+        heroHp = new int[heroById.length];
+        monsterAlive = m -> monsters.hp[m] > 0;
+        heroAlive = i -> heroHp[i] > 0;
+    }
+
+    void resolve(List<Hero> heroes, long tick) {
+        this.tick = tick;
+        heroesAttack(heroes);
+        snapshotHeroes();
+        monstersAct();
+    }
+
+    private void heroesAttack(List<Hero> heroes) {
+        MonsterStore ms = monsters;
+        for (int i = 0; i < heroes.size(); i++) {
+            Hero h = heroes.get(i);
+            double rangeSq = h.range * h.range;
+            int target = ms.slot(h.target);
+            if (target < 0 || ms.hp[target] <= 0 || distanceSq(h.x, h.y, ms.x[target], ms.y[target]) > rangeSq) {
+                target = monsterGrid.nearest(h.x, h.y, Double.MAX_VALUE, monsterAlive);
+                h.target = target < 0 ? -1 : ms.handle(target);
+            }
+            if (target < 0) continue;
+
+            if (distanceSq(h.x, h.y, ms.x[target], ms.y[target]) <= rangeSq && h.canAttack()) {
+                int hp = ms.hp[target];
+                ms.hp[target] -= h.damage;
+                h.resetAttack();
+                events.monsterHit(h.id, ms, target, h.damage, hp);
+            }
+        }
+    }
+
+    private void snapshotHeroes() {
+        for (int i = 0; i < heroById.length; i++) {
+            Hero h = heroById[i];
+            heroX[i] = h.x;
+            heroY[i] = h.y;
+            heroHp[i] = h.hp;
+        }
+        heroGrid.rebuild(heroX, heroY, heroById.length);
+    }
+
+    // every monster reads the hero snapshot and its own slot and writes only its own slot and the
+    // position back buffer, so chunks are independent; damage is summed per chunk and applied after
+    private void monstersAct() {
+        int count = monsters.count;
+        int threads = pool == null ? 1 : pool.getParallelism();
+        chunkSize = Math.max(MIN_CHUNK, (count + threads * CHUNKS_PER_THREAD - 1) / (threads * CHUNKS_PER_THREAD));
+        chunkCount = Math.max(1, (count + chunkSize - 1) / chunkSize);
+        int slots = chunkCount * DAMAGE_STRIDE;
+        if (damage.length < slots) damage = new int[slots];
+        Arrays.fill(damage, 0, slots, 0);
+
+        if (pool == null || chunkCount == 1) {
+            act(0, 0, count);
+        } else {
+            if (chunks.length < chunkCount) {
+                chunks = Arrays.copyOf(chunks, chunkCount);
+                for (int c = 0; c < chunkCount; c++) {
+                    if (chunks[c] == null) chunks[c] = new Chunk(c);
+                }
+            }
+            stage.reinitialize();
+            pool.invoke(stage);
+        }
+
+        monsters.swapPositions();
+        for (int i = 0; i < heroById.length; i++) {
+            int total = 0;
+            for (int c = 0; c < chunkCount; c++) {
+                total += damage[c * DAMAGE_STRIDE + i];
+            }
+            if (total == 0) continue;
+            Hero h = heroById[i];
+            int hp = h.hp;
+            h.hp -= total;
+            events.add(CombatEvents.HERO_HIT, i, -1, -1, total, h.x, h.y);
+            if (hp > 0 && h.hp <= 0) events.add(CombatEvents.HERO_DOWN, i, -1, -1, 0, h.x, h.y);
+        }
+    }
+
+    private void act(int chunk, int from, int to) {
+        MonsterStore ms = monsters;
+        int base = chunk * DAMAGE_STRIDE;
+        for (int m = from; m < to; m++) {
+            if (ms.isStunned(m)) {
+                ms.hold(m);
+                continue;
+            }
+            double range = ms.range(m);
+            double rangeSq = range * range;
+            int target = ms.target[m];
+            if (target < 0 || heroHp[target] <= 0 || ai.isDue(m, tick)) {
+                target = heroGrid.nearest(ms.x[m], ms.y[m], Double.MAX_VALUE, heroAlive);
+                ms.target[m] = target;
+                ai.planned(m);
+            }
+            if (target < 0) {
+                ms.hold(m);
+                continue;
+            }
+
+            if (distanceSq(ms.x[m], ms.y[m], heroX[target], heroY[target]) <= rangeSq) {
+                if (ms.canAttack(m)) {
+                    damage[base + target] += ms.damage(m);
+                    ms.resetAttack(m);
+                }
+                ms.hold(m);
+            } else {
+                steer(m, target);
+            }
+        }
+    }
+
+    // follow the flow field until the monster is next to a hero, then close in on its target directly
+    private void steer(int m, int target) {
+        MonsterStore ms = monsters;
+        int cell = flow.cellOf(ms.x[m], ms.y[m]);
+        int dir = flow.direction(cell);
+        if (dir < 0 || flow.distance(cell) <= FlowField.NEAR) {
+            ms.stepToward(m, heroX[target], heroY[target]);
+        } else {
+            ms.step(m, FlowField.dirX(dir), FlowField.dirY(dir));
+        }
+    }
+
+    private static double distanceSq(double ax, double ay, double bx, double by) {
+        double dx = ax - bx;
+        double dy = ay - by;
+        return dx * dx + dy * dy;
+    }
+
+    private class MonsterStage extends RecursiveAction {
+        @Override
+        protected void compute() {
+            for (int c = chunkCount - 1; c > 0; c--) {
+                chunks[c].reinitialize();
+                chunks[c].fork();
+            }
+            chunks[0].reinitialize();
+            chunks[0].invoke();
+            for (int c = 1; c < chunkCount; c++) {
+                chunks[c].join();
+            }
+        }
+    }
+
+    private class Chunk extends RecursiveAction {
+        private final int index;
+
+        Chunk(int index) {
+            this.index = index;
+        }
+
+        @Override
+        protected void compute() {
+            int from = index * chunkSize;
+            act(index, from, Math.min(monsters.count, from + chunkSize));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+import java.util.Arrays;
+
+// which combat events are heard: each maps to a sound in the bank, panned by where it happened
+// across the view and quieter off screen. A sound plays at most once per tick, so a volley hitting
+// forty monsters is one hit, not forty
+class CombatSounds implements CombatEvents.Handler {
+    private static final int[] ABILITY_SOUNDS = {SoundBank.DASH, SoundBank.FIREBALL, SoundBank.STUN};
+    private static final double OFF_SCREEN = 0.35;
+
+    private final AudioMixer mixer;
+    private final Camera camera;
+    private final long[] lastTick = new long[SoundBank.COUNT];
+
+    CombatSounds(AudioMixer mixer, Camera camera) {
+        this.mixer = mixer;
+        this.camera = camera;
+        Arrays.fill(lastTick, -1);
+    }
+
+    @Override
+    public void event(int type, long tick, int hero, int monster, int kind, int amount, double x, double y) {
+        int sound;
+        double volume;
+        switch (type) {
+            case CombatEvents.DAMAGE: sound = SoundBank.HIT; volume = 0.45; break;
+            case CombatEvents.KILL: sound = SoundBank.KILL; volume = 0.5; break;
+            case CombatEvents.EXPLOSION: sound = SoundBank.EXPLOSION; volume = 0.9; break;
+            case CombatEvents.ABILITY: sound = ABILITY_SOUNDS[kind]; volume = 0.7; break;
+            case CombatEvents.HERO_HIT: sound = SoundBank.HURT; volume = 0.5; break;
+            case CombatEvents.HERO_DOWN: sound = SoundBank.DOWN; volume = 1; break;
+            default: return;
+        }
+        if (lastTick[sound] == tick) return;
+        lastTick[sound] = tick;
+        if (!camera.isVisible(x, y, 0)) volume *= OFF_SCREEN;
+        mixer.play(sound, volume, (x - camera.x) / camera.viewWidth * 2 - 1);
+    }
+}
@@ -0,0 +1,229 @@
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+// one player's connection to a CoopServer; the world is mirrored into a Simulation that is never
+// ticked, only overwritten from state messages, so GameRenderer can draw it unchanged
+class CoopClient implements Closeable {
+    final Simulation mirror;
+    final int heroId;
+    private final SocketChannel channel;
+    private ByteBuffer in = ByteBuffer.allocateDirect(64 * 1024);
+    private final ByteBuffer out = ByteBuffer.allocateDirect(256).flip();
+    private int seq;
+    private long lastEcho;
+    // smoothed round trip, which sets how far ahead inputs are stamped
+    private long roundTripNanos;
+    // local monster handle by server monster id
+    private int[] handles = new int[256];
+
+    final LatencyHistogram latency = new LatencyHistogram();
+    long states;
+    long stateBytes;
+    long maxStateBytes;
+    long droppedInputs;
+    // state messages after which the mirrored monsters disagreed with the server's
+    long mismatches;
+
+    private CoopClient(SocketChannel channel, int heroId, long seed, WaveRules rules) {
+        this.channel = channel;
+        this.heroId = heroId;
+        this.mirror = new Simulation(rules, seed);
+        Arrays.fill(handles, -1);
+    }
+
+    static CoopClient connect(InetSocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(channel, length);
+        ByteBuffer welcome = ByteBuffer.allocate(length.getInt(0));
+        readFully(channel, welcome);
+        welcome.flip();
+        if (welcome.get() != CoopServer.MSG_WELCOME) throw new IOException("Unexpected handshake");
+        int heroId = welcome.get();
+        long seed = welcome.getLong();
+        WaveRules rules = WaveRules.read(new DataInputStream(new ByteArrayInputStream(welcome.array(), welcome.position(), welcome.remaining())));
+        channel.configureBlocking(false);
+        return new CoopClient(channel, heroId, seed, rules);
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new EOFException("Server closed the connection (no free hero?)");
+        }
+    }
+
+    // stamped with the tick it should apply to and the local clock; the server echoes the clock
+    // stamp of the last input it received
+    void send(int dx, int dy, boolean ability) throws IOException {
+        if (out.hasRemaining()) channel.write(out);
+        if (out.hasRemaining()) {
+            droppedInputs++;
+            return;
+        }
+        out.clear();
+        out.putInt(CoopServer.INPUT_LENGTH).put((byte) CoopServer.MSG_INPUT);
+        out.putInt(++seq).putLong(targetTick()).putLong(System.nanoTime());
+        out.put((byte) Integer.signum(dx)).put((byte) Integer.signum(dy)).put(ability ? (byte) CoopServer.INPUT_ABILITY : 0);
+        out.flip();
+        channel.write(out);
+    }
+
+    // the mirror is the server's tick as of half a round trip ago and the input takes the other half
+    // to arrive, so aim a round trip ahead of it
+    private long targetTick() {
+        return mirror.tickCount + (roundTripNanos + GameLoop.STEP_NANOS - 1) / GameLoop.STEP_NANOS;
+    }
+
+    // applies every complete state message that has arrived; returns how many
+    int poll() throws IOException {
+        if (channel.read(in) < 0) throw new EOFException("Server closed the connection");
+        in.flip();
+        int applied = 0;
+        while (in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            if (in.remaining() < 4 + length) {
+                if (4 + length > in.capacity()) grow(4 + length);
+                break;
+            }
+            int end = in.position() + 4 + length;
+            in.getInt();
+            if (in.get() == CoopServer.MSG_STATE) {
+                if (applied == 0) savePositions();
+                applyState(in);
+                stateBytes += 4 + length;
+                maxStateBytes = Math.max(maxStateBytes, 4 + length);
+                states++;
+                applied++;
+            }
+            in.position(end);
+        }
+        in.compact();
+        if (applied > 0) mirror.rebuildSpatialIndex();
+        return applied;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void savePositions() {
+        for (Hero h : mirror.heroes) {
+            h.savePosition();
+        }
+        mirror.monsters.savePositions();
+    }
+
+    private void applyState(ByteBuffer in) {
+        Simulation sim = mirror;
+        MonsterStore ms = sim.monsters;
+        sim.tickCount = in.getLong();
+        in.getInt();
+        long echo = in.getLong();
+        if (echo != 0 && echo != lastEcho) {
+            long rtt = System.nanoTime() - echo;
+            latency.record(rtt);
+            roundTripNanos = roundTripNanos == 0 ? rtt : roundTripNanos + (rtt - roundTripNanos) / 8;
+            lastEcho = echo;
+        }
+        sim.setWave(in.getInt());
+        sim.waveActive = in.get() != 0;
+        sim.waveRemainingToSpawn = in.getInt();
+        sim.intermissionTimer = in.getFloat();
+        int serverMonsters = in.getInt();
+        int serverChecksum = in.getInt();
+
+        sim.heroes.clear();
+        int heroCount = in.get();
+        for (int i = 0; i < heroCount; i++) {
+            Hero h = sim.heroById[in.get()];
+            h.x = position(in.getShort());
+            h.y = position(in.getShort());
+            h.hp = in.getInt();
+            h.setAbilityCooldownRemaining(in.getShort() / 100.0);
+            sim.heroes.add(h);
+            if (h.id == heroId) sim.selectedHero = i;
+        }
+
+        int n = in.getInt();
+        for (int i = 0; i < n; i++) {
+            int id = in.getInt();
+            int slot = ms.slot(handles[id]);
+            if (slot >= 0) ms.remove(slot);
+            handles[id] = -1;
+        }
+
+        n = in.getInt();
+        for (int i = 0; i < n; i++) {
+            int id = in.getInt();
+            double x = position(in.getShort());
+            double y = position(in.getShort());
+            int hp = in.getInt();
+            int kind = in.get();
+            boolean stunned = in.get() != 0;
+            int handle = ms.add(x, y, kind);
+            int slot = ms.slot(handle);
+            ms.hp[slot] = hp;
+            ms.stunTimer[slot] = stunned ? 1 : 0;
+            if (id >= handles.length) {
+                int old = handles.length;
+                handles = Arrays.copyOf(handles, Math.max(id + 1, old * 2));
+                Arrays.fill(handles, old, handles.length, -1);
+            }
+            handles[id] = handle;
+        }
+
+        n = in.getInt();
+        for (int i = 0; i < n; i++) {
+            int slot = ms.slot(handles[in.getInt()]);
+            int flags = in.get();
+            if ((flags & CoopServer.UPDATE_STEP) != 0) {
+                ms.x[slot] = position(CoopServer.quantize(ms.x[slot]) + in.get());
+                ms.y[slot] = position(CoopServer.quantize(ms.y[slot]) + in.get());
+            }
+            if ((flags & CoopServer.UPDATE_MOVE) != 0) {
+                ms.x[slot] = position(in.getShort());
+                ms.y[slot] = position(in.getShort());
+            }
+            if ((flags & CoopServer.UPDATE_HP) != 0) ms.hp[slot] = in.getInt();
+            ms.stunTimer[slot] = (flags & CoopServer.UPDATE_STUNNED) != 0 ? 1 : 0;
+        }
+        int checksum = 0;
+        for (int m = 0; m < ms.count; m++) {
+            checksum += CoopServer.checksum(CoopServer.quantize(ms.x[m]), CoopServer.quantize(ms.y[m]), ms.hp[m]);
+        }
+        if (ms.count != serverMonsters || checksum != serverChecksum) mismatches++;
+
+        // projectiles come in the server's store order, which compaction keeps, but each one that dies
+        // shifts every later one down a slot and nothing on the wire says which died; rather than
+        // interpolate between two different projectiles they are drawn where they are
+        ProjectileStore ps = sim.projectiles;
+        ps.resize(in.getInt());
+        for (int i = 0; i < ps.count; i++) {
+            ps.x[i] = position(in.getShort());
+            ps.y[i] = position(in.getShort());
+            ps.prevX[i] = ps.x[i];
+            ps.prevY[i] = ps.y[i];
+            ps.radius[i] = in.get();
+        }
+    }
+
+    private void grow(int frame) {
+        ByteBuffer bigger = ByteBuffer.allocateDirect(Math.max(frame, in.capacity() * 2));
+        bigger.put(in);
+        in = bigger.flip();
+    }
+
+    private static double position(int quantized) {
+        return quantized / CoopServer.POSITION_SCALE;
+    }
+}
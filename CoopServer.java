@@ -0,0 +1,464 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+
+// authoritative co-op host: owns the simulation, takes tick-stamped inputs from one client per hero and
+// sends every client the world as a delta against what that client last received. Inputs wait for
+// the tick they are stamped with; one that arrives late applies on the next tick
+class CoopServer implements Runnable, Closeable {
+    // frames are an int length followed by a type byte and the payload
+    static final int MSG_WELCOME = 1;
+    static final int MSG_STATE = 2;
+    static final int MSG_INPUT = 3;
+
+    static final int INPUT_ABILITY = 1;
+    // type, seq, target tick, clock stamp, dx, dy, flags
+    static final int INPUT_LENGTH = 1 + 4 + 8 + 8 + 3;
+
+    // positions travel as 1/16 px fixed point in a short, the world is well under 2048 px
+    static final double POSITION_SCALE = 16;
+
+    // monster update flags; STUNNED is the current state and carries no payload
+    static final int UPDATE_STEP = 1;
+    static final int UPDATE_MOVE = 2;
+    static final int UPDATE_HP = 4;
+    static final int UPDATE_STUNNED = 8;
+
+    private static final int MAX_CATCH_UP_TICKS = 5;
+    // a stamp further ahead than this is clamped, so a bad client can't park its inputs forever
+    private static final int MAX_INPUT_LEAD = 30;
+
+    private final Simulation sim;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Player[] players;
+    private int connected;
+    private boolean started;
+    private volatile boolean running;
+    private Thread thread;
+    // states not sent because a client still had the previous one queued
+    volatile long skippedStates;
+
+    CoopServer(Simulation sim, InetSocketAddress address) throws IOException {
+        this.sim = sim;
+        this.players = new Player[sim.heroById.length];
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.configureBlocking(false);
+        server.bind(address);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = 7777;
+        long seed = System.nanoTime();
+        WaveRules rules = new WaveRules();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--serve": port = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--set": {
+                    String[] kv = args[++i].split("=", 2);
+                    rules.set(kv[0], Double.parseDouble(kv[1]));
+                    break;
+                }
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        CoopServer server = new CoopServer(new Simulation(rules, seed), new InetSocketAddress(port));
+        System.out.println("co-op server on port " + server.port() + ", seed " + seed);
+        server.run();
+    }
+
+    int port() {
+        return server.socket().getLocalPort();
+    }
+
+    void start() {
+        running = true;
+        thread = new Thread(this, "coop-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        running = true;
+        long nextTick = System.nanoTime();
+        try {
+            while (running) {
+                long wait = nextTick - System.nanoTime();
+                if (wait > 0) {
+                    selector.select(Math.max(1, wait / 1_000_000));
+                } else {
+                    selector.selectNow();
+                }
+                handleKeys();
+
+                int ticks = 0;
+                while (System.nanoTime() - nextTick >= 0 && ticks < MAX_CATCH_UP_TICKS) {
+                    if (connected > 0) tick();
+                    nextTick += GameLoop.STEP_NANOS;
+                    ticks++;
+                }
+                // after a long stall drop the backlog instead of spiralling
+                if (System.nanoTime() - nextTick >= 0) nextTick = System.nanoTime();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            for (Player p : players) {
+                if (p != null) closeQuietly(p.channel);
+            }
+            closeQuietly(server);
+            closeQuietly(selector);
+        }
+    }
+
+    private void tick() throws IOException {
+        if (!started) {
+            sim.start();
+            started = true;
+        }
+        for (Player p : players) {
+            if (p != null) applyInputs(p);
+        }
+        sim.tick();
+        for (Player p : players) {
+            if (p == null) continue;
+            if (p.out.hasRemaining()) {
+                skippedStates++;
+                continue;
+            }
+            encodeState(p);
+            flush(p);
+        }
+    }
+
+    private void handleKeys() throws IOException {
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+            SelectionKey key = it.next();
+            it.remove();
+            if (!key.isValid()) continue;
+            if (key.isAcceptable()) {
+                accept();
+                continue;
+            }
+            Player p = (Player) key.attachment();
+            if (key.isReadable()) read(p);
+            if (key.isValid() && key.isWritable()) flush(p);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        int heroId = -1;
+        for (int i = 0; i < players.length && heroId < 0; i++) {
+            if (players[i] == null && sim.heroById[i].hp > 0) heroId = i;
+        }
+        if (heroId < 0) {
+            channel.close();
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Player p = new Player(channel, heroId);
+        p.key = channel.register(selector, SelectionKey.OP_READ, p);
+        players[heroId] = p;
+        connected++;
+
+        // the rules make the same spawn tables on the client, so monsters only need to send their kind
+        ByteArrayOutputStream rules = new ByteArrayOutputStream();
+        sim.rules.write(new DataOutputStream(rules));
+        ByteBuffer out = p.out;
+        out.clear();
+        out.putInt(1 + 1 + 8 + rules.size()).put((byte) MSG_WELCOME).put((byte) heroId).putLong(sim.seed);
+        out.put(rules.toByteArray());
+        out.flip();
+        flush(p);
+    }
+
+    private void disconnect(Player p) {
+        players[p.heroId] = null;
+        connected--;
+        p.key.cancel();
+        closeQuietly(p.channel);
+        sim.setHeroMove(p.heroId, 0, 0);
+    }
+
+    private void read(Player p) throws IOException {
+        ByteBuffer in = p.in;
+        int n;
+        try {
+            n = p.channel.read(in);
+        } catch (IOException e) {
+            n = -1;
+        }
+        if (n < 0) {
+            disconnect(p);
+            return;
+        }
+        in.flip();
+        while (in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            // a frame that can't fit, or has no type, would stall or rewind the stream
+            if (length < 1 || 4 + length > in.capacity()) {
+                disconnect(p);
+                return;
+            }
+            if (in.remaining() < 4 + length) break;
+            int end = in.position() + 4 + length;
+            in.getInt();
+            if (in.get() == MSG_INPUT) {
+                if (length != INPUT_LENGTH) {
+                    disconnect(p);
+                    return;
+                }
+                p.lastSeq = in.getInt();
+                long tick = Math.min(in.getLong(), sim.tickCount + MAX_INPUT_LEAD);
+                p.lastStamp = in.getLong();
+                int dx = in.get();
+                int dy = in.get();
+                int flags = in.get();
+                // a full queue makes room by applying its oldest input now
+                if (p.pending() == Player.INPUTS) applyInput(p);
+                p.queue(tick, dx, dy, flags);
+            }
+            in.position(end);
+        }
+        in.compact();
+    }
+
+    // in arrival order, every input due by the tick about to run; a later stamp holds back the ones
+    // behind it, so a client's inputs never reorder
+    private void applyInputs(Player p) {
+        while (p.pending() > 0 && p.inputTick[p.inputHead & Player.INPUT_MASK] <= sim.tickCount) {
+            applyInput(p);
+        }
+    }
+
+    private void applyInput(Player p) {
+        int i = p.inputHead++ & Player.INPUT_MASK;
+        sim.setHeroMove(p.heroId, p.inputDx[i], p.inputDy[i]);
+        if ((p.inputFlags[i] & INPUT_ABILITY) != 0) sim.triggerAbility(p.heroId);
+    }
+
+    private void flush(Player p) throws IOException {
+        try {
+            p.channel.write(p.out);
+        } catch (IOException e) {
+            disconnect(p);
+            return;
+        }
+        int ops = p.out.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+        if (p.key.interestOps() != ops) p.key.interestOps(ops);
+    }
+
+    // heroes and projectiles are few and sent whole; monsters are diffed against this client's
+    // last-sent copy: despawns, then spawns, then only the fields that changed
+    private void encodeState(Player p) {
+        MonsterStore ms = sim.monsters;
+        p.reserve(sim.heroes.size(), ms.count, sim.projectiles.count);
+        ByteBuffer out = p.out;
+        out.clear();
+        out.putInt(0).put((byte) MSG_STATE);
+        out.putLong(sim.tickCount).putInt(p.lastSeq).putLong(p.lastStamp);
+        out.putInt(sim.wave).put(sim.waveActive ? (byte) 1 : 0).putInt(sim.waveRemainingToSpawn);
+        out.putFloat((float) sim.intermissionTimer);
+        out.putInt(ms.count);
+        int checksumAt = out.position();
+        out.putInt(0);
+
+        out.put((byte) sim.heroes.size());
+        for (Hero h : sim.heroes) {
+            out.put((byte) h.id).putShort(quantize(h.x)).putShort(quantize(h.y)).putInt(h.hp);
+            out.putShort((short) Math.round(h.getAbilityCooldownRemaining() * 100));
+        }
+
+        int countAt = out.position();
+        int n = 0;
+        out.putInt(0);
+        for (int id = 0; id < p.known; id++) {
+            int handle = p.sentHandle[id];
+            if (handle < 0 || ms.slot(handle) >= 0) continue;
+            out.putInt(id);
+            p.sentHandle[id] = -1;
+            n++;
+        }
+        out.putInt(countAt, n);
+
+        countAt = out.position();
+        n = 0;
+        out.putInt(0);
+        for (int m = 0; m < ms.count; m++) {
+            int id = ms.id(m);
+            int handle = ms.handle(m);
+            if (id < p.known && p.sentHandle[id] == handle) continue;
+            short qx = quantize(ms.x[m]);
+            short qy = quantize(ms.y[m]);
+            boolean stunned = ms.isStunned(m);
+            out.putInt(id).putShort(qx).putShort(qy).putInt(ms.hp[m]).put(ms.kind[m]).put(stunned ? (byte) 1 : 0);
+            p.remember(id, handle, qx, qy, ms.hp[m], stunned);
+            n++;
+        }
+        out.putInt(countAt, n);
+
+        countAt = out.position();
+        n = 0;
+        int checksum = 0;
+        out.putInt(0);
+        for (int m = 0; m < ms.count; m++) {
+            int id = ms.id(m);
+            int hp = ms.hp[m];
+            checksum += checksum(quantize(ms.x[m]), quantize(ms.y[m]), hp);
+            int dx = quantize(ms.x[m]) - p.sentX[id];
+            int dy = quantize(ms.y[m]) - p.sentY[id];
+            boolean stunned = ms.isStunned(m);
+            if (dx == 0 && dy == 0 && hp == p.sentHp[id] && stunned == p.sentStunned[id]) continue;
+
+            int flags = stunned ? UPDATE_STUNNED : 0;
+            if (dx != 0 || dy != 0) flags |= dx == (byte) dx && dy == (byte) dy ? UPDATE_STEP : UPDATE_MOVE;
+            if (hp != p.sentHp[id]) flags |= UPDATE_HP;
+            out.putInt(id).put((byte) flags);
+            if ((flags & UPDATE_STEP) != 0) out.put((byte) dx).put((byte) dy);
+            if ((flags & UPDATE_MOVE) != 0) out.putShort((short) (p.sentX[id] + dx)).putShort((short) (p.sentY[id] + dy));
+            if ((flags & UPDATE_HP) != 0) out.putInt(hp);
+            p.sentX[id] += dx;
+            p.sentY[id] += dy;
+            p.sentHp[id] = hp;
+            p.sentStunned[id] = stunned;
+            n++;
+        }
+        out.putInt(countAt, n);
+        out.putInt(checksumAt, checksum);
+
+        ProjectileStore ps = sim.projectiles;
+        // an int: a pierce-everything multishot can put well over 65535 in flight
+        out.putInt(ps.count);
+        for (int i = 0; i < ps.count; i++) {
+            out.putShort(quantize(ps.x[i])).putShort(quantize(ps.y[i])).put((byte) ps.radius[i]);
+        }
+        out.putInt(0, out.position() - 4);
+        out.flip();
+    }
+
+    // lets a client check its mirror against what the server holds
+    static int checksum(int qx, int qy, int hp) {
+        return (qx * 31 + qy) * 31 + hp;
+    }
+
+    static short quantize(double v) {
+        return (short) Math.round(v * POSITION_SCALE);
+    }
+
+    private static void closeQuietly(Closeable c) {
+        try {
+            c.close();
+        } catch (IOException e) {
+            // already gone
+        }
+    }
+
+    private static final class Player {
+        private static final int HEADER_BYTES = 64;
+        private static final int HERO_BYTES = 11;
+        private static final int SPAWN_BYTES = 14;
+        private static final int UPDATE_BYTES = 13;
+        static final int INPUTS = 64;
+        static final int INPUT_MASK = INPUTS - 1;
+
+        final SocketChannel channel;
+        final int heroId;
+        SelectionKey key;
+        final ByteBuffer in = ByteBuffer.allocate(1024);
+        // between flips: the bytes still to be written
+        ByteBuffer out = ByteBuffer.allocateDirect(16 * 1024).flip();
+        int lastSeq;
+        long lastStamp;
+
+        // inputs received but not yet due, a ring
+        final long[] inputTick = new long[INPUTS];
+        final byte[] inputDx = new byte[INPUTS];
+        final byte[] inputDy = new byte[INPUTS];
+        final byte[] inputFlags = new byte[INPUTS];
+        int inputHead;
+        int inputTail;
+
+        // what this client last received, indexed by monster id; a handle of -1 means not sent
+        int known;
+        int[] sentHandle = new int[0];
+        short[] sentX = new short[0];
+        short[] sentY = new short[0];
+        int[] sentHp = new int[0];
+        boolean[] sentStunned = new boolean[0];
+
+        Player(SocketChannel channel, int heroId) {
+            this.channel = channel;
+            this.heroId = heroId;
+        }
+
+        int pending() {
+            return inputTail - inputHead;
+        }
+
+        void queue(long tick, int dx, int dy, int flags) {
+            int i = inputTail++ & INPUT_MASK;
+            inputTick[i] = tick;
+            inputDx[i] = (byte) dx;
+            inputDy[i] = (byte) dy;
+            inputFlags[i] = (byte) flags;
+        }
+
+        // worst case every known monster despawns and every live one spawns and updates
+        void reserve(int heroes, int monsters, int projectiles) {
+            int needed = HEADER_BYTES + heroes * HERO_BYTES + known * 4 + monsters * (SPAWN_BYTES + UPDATE_BYTES)
+                    + 4 + projectiles * 5;
+            if (out.capacity() < needed) out = ByteBuffer.allocateDirect(needed + needed / 2).flip();
+        }
+
+        void remember(int id, int handle, short x, short y, int hp, boolean stunned) {
+            if (id >= sentHandle.length) {
+                int capacity = Math.max(id + 1, sentHandle.length * 2);
+                sentHandle = Arrays.copyOf(sentHandle, capacity);
+                sentX = Arrays.copyOf(sentX, capacity);
+                sentY = Arrays.copyOf(sentY, capacity);
+                sentHp = Arrays.copyOf(sentHp, capacity);
+                sentStunned = Arrays.copyOf(sentStunned, capacity);
+            }
+            while (known <= id) {
+                sentHandle[known++] = -1;
+            }
+            sentHandle[id] = handle;
+            sentX[id] = x;
+            sentY[id] = y;
+            sentHp[id] = hp;
+            sentStunned[id] = stunned;
+        }
+    }
+}
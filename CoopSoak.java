@@ -0,0 +1,139 @@
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+import java.util.Random;
+
+// runs a server and its players over loopback with a large standing wave and reports what the
+// state stream costs: bytes per tick per client and input-to-state latency
+class CoopSoak {
+    private static final long REPORT_NANOS = 5_000_000_000L;
+
+    private int players = 3;
+    private int monsters = 2000;
+    private int seconds = 30;
+    private long seed = 1;
+
+    public static void main(String[] args) throws Exception {
+        CoopSoak soak = new CoopSoak();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--soak": break;
+                case "--players": soak.players = Integer.parseInt(args[++i]); break;
+                case "--monsters": soak.monsters = Integer.parseInt(args[++i]); break;
+                case "--seconds": soak.seconds = Integer.parseInt(args[++i]); break;
+                case "--seed": soak.seed = Long.parseLong(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        soak.run();
+    }
+
+    private void run() throws Exception {
+        // monsters deal no damage so the heroes, and the soak, last; they still die and respawn
+        WaveRules rules = new WaveRules();
+        rules.damageBase = 0;
+        rules.damagePerWave = 0;
+        Simulation sim = new Simulation(rules, seed);
+        Random rng = new Random(seed);
+        int grunt = sim.bestiary.monster("grunt");
+        for (int i = 0; i < monsters; i++) {
+            double x = 40 + rng.nextDouble() * (Simulation.WIDTH - 80);
+            double y = 40 + rng.nextDouble() * (Simulation.HEIGHT - 80);
+            int slot = sim.monsters.slot(sim.monsters.add(x, y, grunt));
+            sim.monsters.hp[slot] *= 4;
+        }
+
+        CoopServer server = new CoopServer(sim, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        CoopClient[] clients = new CoopClient[players];
+        for (int i = 0; i < players; i++) {
+            clients[i] = CoopClient.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.port()));
+        }
+        System.out.printf(Locale.ROOT, "soak: %d players, %d monsters, %d s on port %d%n", players, monsters, seconds, server.port());
+
+        int[] moveX = new int[players];
+        int[] moveY = new int[players];
+        long[] latency = new long[LatencyHistogram.BUCKETS];
+        long[] window = new long[LatencyHistogram.BUCKETS];
+        long maxLatency = 0;
+        long monsterSamples = 0;
+        long monsterSum = 0;
+        int monsterMax = 0;
+
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        long nextReport = start + REPORT_NANOS;
+        long nextTick = start;
+        long tick = 0;
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < players; i++) {
+                CoopClient c = clients[i];
+                if (c.poll() > 0) {
+                    int count = c.mirror.monsters.count;
+                    monsterSum += count;
+                    monsterSamples++;
+                    monsterMax = Math.max(monsterMax, count);
+                }
+                // wander, changing direction about once a second, and fire whenever the skill is up
+                if (tick % 60 == i * 7) {
+                    moveX[i] = rng.nextInt(3) - 1;
+                    moveY[i] = rng.nextInt(3) - 1;
+                }
+                Hero h = c.mirror.heroById[c.heroId];
+                c.send(moveX[i], moveY[i], h.hp > 0 && h.canUseAbility());
+            }
+            tick++;
+
+            long now = System.nanoTime();
+            if (now >= nextReport) {
+                for (CoopClient c : clients) {
+                    maxLatency = Math.max(maxLatency, c.latency.drainTo(window));
+                    for (int b = 0; b < window.length; b++) {
+                        latency[b] += window[b];
+                    }
+                }
+                report(clients, latency, maxLatency, monsterSamples == 0 ? 0 : monsterSum / monsterSamples, monsterMax, server, now - start);
+                nextReport += REPORT_NANOS;
+            }
+            nextTick += GameLoop.STEP_NANOS;
+            long wait = nextTick - System.nanoTime();
+            if (wait > 0) Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+        }
+
+        for (CoopClient c : clients) {
+            maxLatency = Math.max(maxLatency, c.latency.drainTo(window));
+            for (int b = 0; b < window.length; b++) {
+                latency[b] += window[b];
+            }
+            c.close();
+        }
+        server.close();
+        report(clients, latency, maxLatency, monsterSamples == 0 ? 0 : monsterSum / monsterSamples, monsterMax, server, System.nanoTime() - start);
+        long mismatches = 0;
+        for (CoopClient c : clients) {
+            mismatches += c.mismatches;
+        }
+        System.out.println(mismatches == 0 ? "mirrors consistent" : "MIRROR MISMATCHES: " + mismatches);
+        if (mismatches != 0) System.exit(1);
+    }
+
+    private static void report(CoopClient[] clients, long[] latency, long maxLatency, long avgMonsters, int maxMonsters, CoopServer server, long elapsed) {
+        long states = 0;
+        long bytes = 0;
+        long maxBytes = 0;
+        long dropped = 0;
+        for (CoopClient c : clients) {
+            states += c.states;
+            bytes += c.stateBytes;
+            maxBytes = Math.max(maxBytes, c.maxStateBytes);
+            dropped += c.droppedInputs;
+        }
+        long total = LatencyHistogram.total(latency);
+        double perTick = states == 0 ? 0 : bytes / (double) states;
+        System.out.printf(Locale.ROOT,
+                "%5.1fs monsters avg %d max %d | state %.0f B/tick avg, %d max, %.1f KB/s per client | latency p50 %.2f p99 %.2f max %.2f ms | skipped %d dropped %d%n",
+                elapsed / 1e9, avgMonsters, maxMonsters, perTick, maxBytes, bytes / 1024.0 / clients.length / (elapsed / 1e9),
+                LatencyHistogram.percentile(latency, total, 0.5) / 1e6, LatencyHistogram.percentile(latency, total, 0.99) / 1e6,
+                maxLatency / 1e6, server.skippedStates, dropped);
+    }
+}
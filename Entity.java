@@ -1,6 +1,11 @@
+import java.nio.ByteBuffer;
+
 abstract class Entity {
+    static final int SNAPSHOT_BYTES = 5 * 8 + 2 * 4;
     double x;
     double y;
+    double prevX;
+    double prevY;
     int hp;
     int maxHp;
     int damage;
@@ -11,6 +16,8 @@ abstract class Entity {
     Entity(double x, double y, int maxHp, int damage, double range, double attackCooldown) {
         this.x = x;
         this.y = y;
+        this.prevX = x;
+        this.prevY = y;
         this.maxHp = maxHp;
         this.hp = maxHp;
         this.damage = damage;
@@ -20,7 +27,12 @@ abstract class Entity {
     }
 
     void update() {
-        if (attackTimer > 0) attackCooldown -= 1.0 / 60.0;
+        if (attackTimer > 0) attackTimer -= 1.0 / 60.0;
+    }
+
+    void savePosition() {
+        prevX = x;
+        prevY = y;
     }
 
     boolean canAttack() {
@@ -30,4 +42,20 @@ abstract class Entity {
     void resetAttack() {
         attackTimer = attackCooldown;
     }
+
+    void write(ByteBuffer out) {
+        out.putDouble(x).putDouble(y).putDouble(prevX).putDouble(prevY);
+        out.putInt(hp).putInt(maxHp);
+        out.putDouble(attackTimer);
+    }
+
+    void read(ByteBuffer in) {
+        x = in.getDouble();
+        y = in.getDouble();
+        prevX = in.getDouble();
+        prevY = in.getDouble();
+        hp = in.getInt();
+        maxHp = in.getInt();
+        attackTimer = in.getDouble();
+    }
 }
@@ -0,0 +1,168 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+class FlowField {
+    // headroom so UNREACHABLE + DIAGONAL cannot overflow
+    static final int UNREACHABLE = Integer.MAX_VALUE / 2;
+    private static final int STRAIGHT = 5;
+    private static final int DIAGONAL = 7;
+    // within one step of a hero the 8-way directions are too coarse to steer by
+    static final int NEAR = DIAGONAL;
+    private static final int[] NX = {1, -1, 0, 0, 1, 1, -1, -1};
+    private static final int[] NY = {0, 0, 1, -1, 1, -1, 1, -1};
+    private static final double[] DIR_X = new double[NX.length];
+    private static final double[] DIR_Y = new double[NX.length];
+
+    static {
+        for (int n = 0; n < NX.length; n++) {
+            double len = Math.sqrt(NX[n] * NX[n] + NY[n] * NY[n]);
+            DIR_X[n] = NX[n] / len;
+            DIR_Y[n] = NY[n] / len;
+        }
+    }
+
+    final double cellSize;
+    final int cols;
+    final int rows;
+    // the grid is padded with a ring of blocked cells so neighbour lookups need no bounds checks
+    private final int stride;
+    private final int[] offsets = new int[NX.length];
+    private final boolean[] blocked;
+    private boolean hasObstacles;
+    private final int[] dist;
+
+    FlowField(double width, double height, double cellSize) {
+        this.cellSize = cellSize;
+        this.cols = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        stride = cols + 2;
+        int cells = stride * (rows + 2);
+        for (int n = 0; n < NX.length; n++) {
+            offsets[n] = NY[n] * stride + NX[n];
+        }
+        blocked = new boolean[cells];
+        dist = new int[cells];
+        for (int gx = 0; gx < stride; gx++) {
+            blocked[gx] = true;
+            blocked[(rows + 1) * stride + gx] = true;
+        }
+        for (int gy = 0; gy < rows + 2; gy++) {
+            blocked[gy * stride] = true;
+            blocked[gy * stride + cols + 1] = true;
+        }
+        Arrays.fill(dist, UNREACHABLE);
+    }
+
+    void block(double x, double y, double w, double h) {
+        for (int gy = row(y); gy <= row(y + h - 1); gy++) {
+            for (int gx = col(x); gx <= col(x + w - 1); gx++) {
+                blocked[(gy + 1) * stride + gx + 1] = true;
+            }
+        }
+        hasObstacles = true;
+    }
+
+    // chamfer distance transform seeded from every living hero: a forward and a backward raster scan
+    // give exact 5/7 distances on an open grid; obstacles need repeated rounds until nothing changes
+    void compute(List<Hero> heroes) {
+        Arrays.fill(dist, UNREACHABLE);
+        for (int i = 0; i < heroes.size(); i++) {
+            Hero h = heroes.get(i);
+            if (h.hp <= 0) continue;
+            int cell = cellOf(h.x, h.y);
+            if (!blocked[cell]) dist[cell] = 0;
+        }
+
+        int first = stride + 1;
+        int last = rows * stride + cols;
+        boolean changed;
+        do {
+            changed = false;
+            for (int c = first; c <= last; c++) {
+                if (blocked[c]) continue;
+                int d = Math.min(dist[c - 1], dist[c - stride]) + STRAIGHT;
+                if (!blocked[c - 1] && !blocked[c - stride]) d = Math.min(d, dist[c - stride - 1] + DIAGONAL);
+                if (!blocked[c + 1] && !blocked[c - stride]) d = Math.min(d, dist[c - stride + 1] + DIAGONAL);
+                if (d < dist[c]) {
+                    dist[c] = d;
+                    changed = true;
+                }
+            }
+            for (int c = last; c >= first; c--) {
+                if (blocked[c]) continue;
+                int d = Math.min(dist[c + 1], dist[c + stride]) + STRAIGHT;
+                if (!blocked[c + 1] && !blocked[c + stride]) d = Math.min(d, dist[c + stride + 1] + DIAGONAL);
+                if (!blocked[c - 1] && !blocked[c + stride]) d = Math.min(d, dist[c + stride - 1] + DIAGONAL);
+                if (d < dist[c]) {
+                    dist[c] = d;
+                    changed = true;
+                }
+            }
+        } while (changed && hasObstacles);
+    }
+
+    // neighbour index to step toward, or -1 on a hero's cell and where no hero is reachable;
+    // read-only, so the parallel monster stage can sample it from any thread
+    int direction(int cell) {
+        int best = dist[cell];
+        int bestN = -1;
+        if (best == UNREACHABLE || best == 0) return -1;
+        for (int n = 0; n < NX.length; n++) {
+            int next = cell + offsets[n];
+            if (blocked[next] || (n >= 4 && cutsCorner(cell, n))) continue;
+            if (dist[next] < best) {
+                best = dist[next];
+                bestN = n;
+            }
+        }
+        return bestN;
+    }
+
+    // no diagonal steps squeezing between two obstacles
+    private boolean cutsCorner(int cell, int n) {
+        return blocked[cell + NX[n]] || blocked[cell + NY[n] * stride];
+    }
+
+    int cellOf(double x, double y) {
+        return (row(y) + 1) * stride + col(x) + 1;
+    }
+
+    int distance(int cell) {
+        return dist[cell];
+    }
+
+    int snapshotBytes() {
+        return dist.length * 4;
+    }
+
+    // the field is only refreshed every few ticks, so a restore needs the distances themselves
+    void write(ByteBuffer out) {
+        for (int d : dist) out.putInt(d);
+    }
+
+    void read(ByteBuffer in) {
+        for (int i = 0; i < dist.length; i++) {
+            dist[i] = in.getInt();
+        }
+    }
+
+    static double dirX(int direction) {
+        return DIR_X[direction];
+    }
+
+    static double dirY(int direction) {
+        return DIR_Y[direction];
+    }
+
+    // monsters spawning outside the arena sample the border cells
+    private int col(double x) {
+        int c = (int) Math.floor(x / cellSize);
+        return c < 0 ? 0 : (c >= cols ? cols - 1 : c);
+    }
+
+    private int row(double y) {
+        int r = (int) Math.floor(y / cellSize);
+        return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+    }
+}
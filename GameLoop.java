@@ -0,0 +1,94 @@
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
+import java.util.concurrent.locks.LockSupport;
+
+class GameLoop implements Runnable {
+    static final long STEP_NANOS = 1_000_000_000L / 60;
+    private static final int MAX_CATCH_UP_TICKS = 5;
+    private static final long MAX_FRAME_NANOS = 250_000_000L;
+
+    interface Client {
+        boolean isPaused();
+
+        void beforeTick();
+
+        // once a frame instead of beforeTick while paused
+        void whilePaused();
+
+        // the simulation is a mirror of a server's and must not be ticked locally
+        boolean isRemote();
+
+        void frame(double alpha);
+    }
+
+    private final Simulation sim;
+    private final Client client;
+    private final long frameNanos;
+    private volatile boolean running;
+    private Thread thread;
+
+    GameLoop(Simulation sim, Client client, int targetFps) {
+        this.sim = sim;
+        this.client = client;
+        this.frameNanos = 1_000_000_000L / Math.max(1, targetFps);
+    }
+
+    static int displayRefreshRate() {
+        if (GraphicsEnvironment.isHeadless()) return 60;
+        int rate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+        return rate == DisplayMode.REFRESH_RATE_UNKNOWN ? 60 : rate;
+    }
+
+    void start() {
+        running = true;
+        thread = new Thread(this, "game-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        if (thread != null) thread.interrupt();
+    }
+
+    @Override
+    public void run() {
+        long previous = System.nanoTime();
+        long accumulator = 0;
+        long nextFrame = previous;
+
+        while (running) {
+            long now = System.nanoTime();
+            long elapsed = Math.min(now - previous, MAX_FRAME_NANOS);
+            previous = now;
+
+            synchronized (sim) {
+                if (client.isPaused()) {
+                    client.whilePaused();
+                    accumulator = 0;
+                } else {
+                    accumulator += elapsed;
+                    int ticks = 0;
+                    while (accumulator >= STEP_NANOS && ticks < MAX_CATCH_UP_TICKS) {
+                        client.beforeTick();
+                        if (!client.isRemote()) sim.tick();
+                        accumulator -= STEP_NANOS;
+                        ticks++;
+                    }
+                    // after a long stall drop the backlog instead of spiralling
+                    if (accumulator >= STEP_NANOS) accumulator %= STEP_NANOS;
+                }
+            }
+
+            client.frame(accumulator / (double) STEP_NANOS);
+
+            nextFrame += frameNanos;
+            long wait = nextFrame - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else {
+                nextFrame = System.nanoTime();
+            }
+        }
+    }
+}
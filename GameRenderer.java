@@ -0,0 +1,358 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Locale;
+import java.util.function.IntConsumer;
+
+class GameRenderer {
+    static final int VIEW_WIDTH = 900;
+    static final int VIEW_HEIGHT = 540;
+    private static final int WIDTH = VIEW_WIDTH;
+    private static final int HEIGHT = VIEW_HEIGHT;
+    private static final int WORLD_WIDTH = Simulation.WIDTH;
+    private static final int WORLD_HEIGHT = Simulation.HEIGHT;
+    private static final int FLOOR_TILE = 90;
+    // how far a sprite or effect may reach past its centre; anything further outside the view is culled
+    private static final int CULL_MARGIN = 60;
+
+    private static final Font OVERLAY_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+    private static final Color OVERLAY_BACKGROUND = new Color(0, 0, 0, 170);
+    private static final Color OVERLAY_TEXT = new Color(170, 255, 170);
+    private static final Color BACKGROUND = new Color(24, 26, 32);
+    private static final Font WAVE_FONT = new Font(Font.DIALOG, Font.BOLD, 16);
+    private static final Font HUD_FONT = new Font(Font.DIALOG, Font.PLAIN, 12);
+    private static final Font BANNER_FONT = new Font(Font.DIALOG, Font.BOLD, 28);
+    private static final Font BANNER_HINT_FONT = new Font(Font.DIALOG, Font.PLAIN, 14);
+    private static final Color HUD_TEXT = new Color(235, 235, 245);
+    private static final Color HUD_STATUS_TEXT = new Color(220, 220, 230);
+    private static final Color PROJECTILE_COLOR = new Color(255, 190, 120);
+    private static final Color PAUSE_SHADE = new Color(0, 0, 0, 160);
+    private static final Color DEFEAT_SHADE = new Color(0, 0, 0, 180);
+    private static final Color DEFEAT_TEXT = new Color(255, 230, 230);
+    // ring strokes are shared per quarter pixel of thickness instead of made per ring per frame
+    private static final int STROKE_STEPS = 4;
+    private static final BasicStroke[] RING_STROKES = new BasicStroke[16 * STROKE_STEPS + 1];
+    private static final Color[] FLASH_SHADES = new Color[256];
+
+    private final Simulation sim;
+    private final QualityGovernor quality;
+    private final Camera camera = new Camera(VIEW_WIDTH, VIEW_HEIGHT, WORLD_WIDTH, WORLD_HEIGHT);
+    private final IntConsumer drawMonster = this::drawMonster;
+    private Graphics2D entityGraphics;
+    private int cameraX;
+    private int cameraY;
+    private SpriteCache sprites;
+    private CombatFeed feed;
+    private CombatSounds sounds;
+    private BufferedImage lowRes;
+    private Image background;
+    private TextLayer waveText;
+    private TextLayer skillText;
+    private TextLayer statusText;
+    private TextLayer helpText;
+    private double alpha = 1;
+    private boolean paused;
+
+    GameRenderer(Simulation sim) {
+        this(sim, 60);
+    }
+
+    GameRenderer(Simulation sim, int fps) {
+        this.sim = sim;
+        this.quality = new QualityGovernor(fps);
+    }
+
+    // combat is heard through the mixer from then on; null mutes it
+    void setAudio(AudioMixer mixer) {
+        sounds = mixer != null ? new CombatSounds(mixer, camera) : null;
+        if (feed != null) feed.listener = sounds;
+    }
+
+    void render(Graphics2D target, double alpha, boolean paused) {
+        long allocatedBefore = sim.profiler.allocated();
+        this.alpha = alpha;
+        this.paused = paused;
+        if (sprites == null) createLayers(target.getDeviceConfiguration());
+
+        // below full scale the frame is drawn into a smaller buffer and stretched onto the target
+        double scale = quality.renderScale();
+        Graphics2D g2 = target;
+        if (scale < 1) {
+            g2 = lowResBuffer(target.getDeviceConfiguration(), scale).createGraphics();
+            g2.setColor(BACKGROUND);
+            g2.fillRect(0, 0, lowRes.getWidth(), lowRes.getHeight());
+            g2.scale(scale, scale);
+        }
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                quality.antialias() ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+
+        synchronized (sim) {
+            // timed from here, so waiting for a tick to finish doesn't count as slow rendering
+            long begin = System.nanoTime();
+            Profiler profiler = sim.profiler;
+            long frameStart = profiler.start();
+            followSelected();
+            feed.drain();
+            g2.translate(sim.shakeX, sim.shakeY);
+            drawArena(g2);
+            long t = profiler.lap(ProfilePhase.DRAW_ARENA, frameStart);
+            g2.translate(-cameraX, -cameraY);
+            drawEntities(g2);
+            g2.translate(cameraX, cameraY);
+            t = profiler.lap(ProfilePhase.DRAW_ENTITIES, t);
+            drawUI(g2);
+            t = profiler.lap(ProfilePhase.DRAW_UI, t);
+            g2.translate(-sim.shakeX, -sim.shakeY);
+            drawFlash(g2);
+            if (g2 != target) {
+                g2.dispose();
+                target.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                target.drawImage(lowRes, 0, 0, WIDTH, HEIGHT, 0, 0, lowRes.getWidth(), lowRes.getHeight(), null);
+            }
+            profiler.lap(ProfilePhase.DRAW_FLASH, t);
+            profiler.record(ProfilePhase.FRAME, frameStart);
+            profiler.recordAllocation(ProfilePhase.FRAME_ALLOC, allocatedBefore);
+            if (profiler.isOverlayVisible()) drawProfiler(target, profiler);
+
+            quality.record(System.nanoTime() - begin);
+            applyQuality();
+        }
+    }
+
+    // the camera tracks the interpolated hero, so it moves as smoothly as the sprite it follows
+    private void followSelected() {
+        Hero h = sim.selected();
+        if (h != null) camera.follow(lerp(h.prevX, h.x, alpha), lerp(h.prevY, h.y, alpha));
+        cameraX = (int) Math.round(camera.x);
+        cameraY = (int) Math.round(camera.y);
+    }
+
+    // the particle budget and trail density live in the simulation, so they are pushed under its lock
+    private void applyQuality() {
+        ParticleSystem fx = sim.effects;
+        fx.particleBudget = quality.particleBudget(fx.particleCapacity);
+        fx.ringBudget = quality.ringBudget(fx.ringCapacity);
+        sim.dashTrailSteps = quality.dashTrailSteps();
+    }
+
+    private BufferedImage lowResBuffer(GraphicsConfiguration gc, double scale) {
+        int w = (int) Math.ceil(WIDTH * scale);
+        int h = (int) Math.ceil(HEIGHT * scale);
+        if (lowRes == null || lowRes.getWidth() != w || lowRes.getHeight() != h) {
+            lowRes = gc != null
+                    ? gc.createCompatibleImage(w, h, Transparency.OPAQUE)
+                    : new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        }
+        return lowRes;
+    }
+
+    // everything that never changes lives in the background; HUD text is re-rasterised on change
+    private void createLayers(GraphicsConfiguration gc) {
+        sprites = new SpriteCache(gc, sim.bestiary);
+        feed = new CombatFeed(sim, gc);
+        feed.listener = sounds;
+        background = renderBackground(gc);
+        waveText = new TextLayer(gc, WAVE_FONT, HUD_TEXT);
+        skillText = new TextLayer(gc, HUD_FONT, HUD_TEXT);
+        statusText = new TextLayer(gc, HUD_FONT, HUD_STATUS_TEXT);
+        helpText = new TextLayer(gc, HUD_FONT, HUD_TEXT);
+        int keys = Math.min(9, sim.heroById.length);
+        helpText.render(0, "WASD: move | " + (keys > 1 ? "1-" + keys : "1") + ": select hero | SPACE: skill | P: pause | F5/F9: save/load | BKSP: rewind");
+    }
+
+    private static Image renderBackground(GraphicsConfiguration gc) {
+        BufferedImage image = gc != null
+                ? gc.createCompatibleImage(WORLD_WIDTH, WORLD_HEIGHT, Transparency.OPAQUE)
+                : new BufferedImage(WORLD_WIDTH, WORLD_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            int m = Simulation.ARENA_MARGIN;
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(BACKGROUND);
+            g.fillRect(0, 0, WORLD_WIDTH, WORLD_HEIGHT);
+            g.setColor(new Color(35, 38, 45));
+            g.fillRoundRect(m, m, WORLD_WIDTH - 2 * m, WORLD_HEIGHT - 2 * m, 18, 18);
+            // faint floor tiles so scrolling reads as movement
+            g.setColor(new Color(40, 43, 51));
+            for (int x = m + FLOOR_TILE; x < WORLD_WIDTH - m; x += FLOOR_TILE) {
+                g.drawLine(x, m + 1, x, WORLD_HEIGHT - m - 2);
+            }
+            for (int y = m + FLOOR_TILE; y < WORLD_HEIGHT - m; y += FLOOR_TILE) {
+                g.drawLine(m + 1, y, WORLD_WIDTH - m - 2, y);
+            }
+            g.setColor(new Color(60, 64, 74));
+            g.drawRoundRect(m, m, WORLD_WIDTH - 2 * m, WORLD_HEIGHT - 2 * m, 18, 18);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    private void drawProfiler(Graphics2D g2, Profiler profiler) {
+        String[] lines = profiler.overlayLines();
+        int height = 16 * (lines.length + 2) + 8;
+        g2.setColor(OVERLAY_BACKGROUND);
+        g2.fillRect(WIDTH - 330, 60, 310, height);
+        g2.setColor(OVERLAY_TEXT);
+        g2.setFont(OVERLAY_FONT);
+        int y = 78;
+        for (String line : lines) {
+            g2.drawString(line, WIDTH - 322, y);
+            y += 16;
+        }
+        g2.drawString("H " + profiler.heroes + "  M " + profiler.monsters + "  P " + profiler.projectiles
+                + "  fx " + profiler.particles + "/" + profiler.rings, WIDTH - 322, y);
+        g2.drawString(String.format(Locale.ROOT, "quality %d  render %.2f ms", quality.level(), quality.smoothedMillis()), WIDTH - 322, y + 16);
+    }
+
+    private void drawArena(Graphics2D g2) {
+        g2.drawImage(background, 0, 0, WIDTH, HEIGHT, cameraX, cameraY, cameraX + WIDTH, cameraY + HEIGHT, null);
+    }
+
+    private void drawEntities(Graphics2D g2) {
+        double a = alpha;
+        for (int i = 0; i < sim.heroes.size(); i++) {
+            Hero h = sim.heroes.get(i);
+            double x = lerp(h.prevX, h.x, a);
+            double y = lerp(h.prevY, h.y, a);
+            if (!camera.isVisible(x, y, CULL_MARGIN)) continue;
+            drawHero(g2, h, x, y);
+            g2.setColor(Color.WHITE);
+            g2.drawString(h.name, (int) (x - 22), (int) (y - 26));
+            sprites.drawHeroBar(g2, (int) (x - 22), (int) (y + 22), h.hp, h.maxHp);
+        }
+
+        // only the monsters in grid cells overlapping the view are visited
+        entityGraphics = g2;
+        sim.forEachMonsterIn(camera.x - CULL_MARGIN, camera.y - CULL_MARGIN,
+                camera.x + WIDTH + CULL_MARGIN, camera.y + HEIGHT + CULL_MARGIN, drawMonster);
+        entityGraphics = null;
+
+        ProjectileStore ps = sim.projectiles;
+        g2.setColor(PROJECTILE_COLOR);
+        for (int i = 0; i < ps.count; i++) {
+            double x = lerp(ps.prevX[i], ps.x[i], a);
+            double y = lerp(ps.prevY[i], ps.y[i], a);
+            if (!camera.isVisible(x, y, CULL_MARGIN)) continue;
+            double r = ps.radius[i];
+            g2.fillOval((int) (x - r), (int) (y - r), (int) (r * 2), (int) (r * 2));
+        }
+
+        ParticleSystem fx = sim.effects;
+        for (int i = 0; i < fx.particleCount; i++) {
+            double x = lerp(fx.prevX[i], fx.x[i], a);
+            double y = lerp(fx.prevY[i], fx.y[i], a);
+            if (!camera.isVisible(x, y, CULL_MARGIN)) continue;
+            g2.setColor(fx.color(fx.color[i], fx.alpha[i]));
+            int size = (int) Math.max(2, fx.size[i]);
+            g2.fillOval((int) (x - size / 2.0), (int) (y - size / 2.0), size, size);
+        }
+
+        Stroke oldStroke = g2.getStroke();
+        for (int i = 0; i < fx.ringCount; i++) {
+            double r = fx.radius[i];
+            if (!camera.isVisible(fx.ringX[i], fx.ringY[i], r + CULL_MARGIN)) continue;
+            g2.setStroke(ringStroke(fx.thickness[i]));
+            g2.setColor(fx.color(fx.ringColor[i], fx.ringAlpha[i]));
+            int size = (int) Math.max(2, r * 2);
+            g2.drawOval((int) (fx.ringX[i] - r), (int) (fx.ringY[i] - r), size, size);
+        }
+        g2.setStroke(oldStroke);
+
+        feed.drawNumbers(g2, camera, a, CULL_MARGIN);
+    }
+
+    private void drawMonster(int m) {
+        MonsterStore ms = sim.monsters;
+        double x = lerp(ms.prevX[m], ms.x[m], alpha);
+        double y = lerp(ms.prevY[m], ms.y[m], alpha);
+        entityGraphics.drawImage(sprites.monster(ms.kind[m], ms.isStunned(m)), (int) (x - 16), (int) (y - 16), null);
+        sprites.drawMonsterBar(entityGraphics, (int) (x - 20), (int) (y + 20), ms.hp[m], ms.maxHp(m));
+    }
+
+    private void drawHero(Graphics2D g2, Hero h, double x, double y) {
+        double t = (sim.tickCount + alpha) * Simulation.STEP;
+        double seed = h.name.hashCode() * 0.13;
+        int bob = (int) Math.round(Math.sin(t * 32 + seed) * 2.5);
+        boolean blink = Math.sin(t * 6.5 + seed) > 0.98;
+        g2.drawImage(sprites.hero(h.kind, blink), (int) x - SpriteCache.HERO_ORIGIN_X, (int) y + bob - SpriteCache.HERO_ORIGIN_Y, null);
+    }
+
+    private void drawUI(Graphics2D g2) {
+        if (waveText.isStale(sim.wave)) waveText.render(sim.wave, "Wave: " + sim.wave);
+        waveText.draw(g2, 40, 30);
+        helpText.draw(g2, 160, 30);
+
+        if (!sim.heroes.isEmpty()) {
+            Hero h = sim.selected();
+            double cd = h.getAbilityCooldownRemaining();
+            long tenths = cd <= 0 ? -1 : Math.round(cd * 10);
+            long key = h.ability.ordinal() * 1_000_000L + tenths;
+            if (skillText.isStale(key)) {
+                String cdText = tenths < 0 ? "READY" : tenths / 10 + "." + tenths % 10 + "s";
+                skillText.render(key, "Skill: " + h.ability + " (" + cdText + ")");
+            }
+            skillText.draw(g2, 40, HEIGHT - 16);
+        }
+
+        if (!sim.waveActive && sim.intermissionTimer > 0 && !sim.heroes.isEmpty()) {
+            long tenths = Math.round(sim.intermissionTimer * 10);
+            if (statusText.isStale(tenths)) statusText.render(tenths, "Next wave in " + tenths / 10 + "." + tenths % 10 + "s");
+            statusText.draw(g2, 40, 48);
+        } else if (sim.waveActive && sim.waveRemainingToSpawn > 0) {
+            // negative keys keep the two messages apart
+            long key = -1L - sim.waveRemainingToSpawn;
+            if (statusText.isStale(key)) statusText.render(key, "Enemies incoming: " + sim.waveRemainingToSpawn);
+            statusText.draw(g2, 40, 48);
+        }
+
+        feed.drawKillFeed(g2, WIDTH - 20, 30, alpha);
+        // the bottom line on the right is ActiveCanvas's frame stats
+        feed.drawDps(g2, WIDTH - 20, HEIGHT - 34);
+
+        if (paused) {
+            g2.setColor(PAUSE_SHADE);
+            g2.fillRect(0, 0, WIDTH, HEIGHT);
+            g2.setColor(Color.WHITE);
+            g2.setFont(BANNER_FONT);
+            g2.drawString("PAUSE", WIDTH / 2 - 50, HEIGHT / 2);
+        }
+
+        if (sim.heroes.isEmpty()) {
+            g2.setColor(DEFEAT_SHADE);
+            g2.fillRect(0, 0, WIDTH, HEIGHT);
+            g2.setColor(DEFEAT_TEXT);
+            g2.setFont(BANNER_FONT);
+            g2.drawString("DEFEAT", WIDTH / 2 - 60, HEIGHT / 2);
+            g2.setFont(BANNER_HINT_FONT);
+            g2.drawString("Relance pour rejouer", WIDTH / 2 - 70, HEIGHT / 2 + 26);
+        }
+    }
+
+    private void drawFlash(Graphics2D g2) {
+        if (sim.flashTimer <= 0) return;
+        float alpha = (float) Math.min(0.35, sim.flashTimer * 0.6);
+        int a = (int) (alpha * 255);
+        Color c = FLASH_SHADES[a];
+        if (c == null) {
+            c = new Color(255, 245, 210, a);
+            FLASH_SHADES[a] = c;
+        }
+        g2.setColor(c);
+        g2.fillRect(0, 0, WIDTH, HEIGHT);
+    }
+
+    private static BasicStroke ringStroke(double thickness) {
+        int step = Math.min(RING_STROKES.length - 1, (int) Math.round(thickness * STROKE_STEPS));
+        BasicStroke s = RING_STROKES[step];
+        if (s == null) {
+            s = new BasicStroke(Math.max(step, 1) / (float) STROKE_STEPS, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+            RING_STROKES[step] = s;
+        }
+        return s;
+    }
+
+    private static double lerp(double from, double to, double t) {
+        return from + (to - from) * t;
+    }
+
+}
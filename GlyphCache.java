@@ -0,0 +1,101 @@
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+// text that is drawn all the time but would need a new string every frame: numbers are put
+// together from pre-rendered digits, one set per colour, and labels are rendered once per key
+class GlyphCache {
+    private static final FontRenderContext FRC = new FontRenderContext(null, true, true);
+    private static final Color SHADOW = new Color(0, 0, 0, 160);
+
+    private final GraphicsConfiguration gc;
+    private final Font font;
+    private final int ascent;
+    private final int digitWidth;
+    // digits[color][digit]
+    private final Image[][] digits;
+    private final int[] scratch = new int[10];
+    private Image[] labels = new Image[16];
+
+    GlyphCache(GraphicsConfiguration gc, Font font, Color[] colors) {
+        this.gc = gc;
+        this.font = font;
+        Rectangle2D bounds = font.getStringBounds("0123456789", FRC);
+        ascent = (int) Math.ceil(-bounds.getY());
+        int w = 0;
+        for (char c = '0'; c <= '9'; c++) {
+            w = Math.max(w, (int) Math.ceil(font.getStringBounds(String.valueOf(c), FRC).getWidth()));
+        }
+        digitWidth = w;
+        digits = new Image[colors.length][10];
+        for (int c = 0; c < colors.length; c++) {
+            for (int d = 0; d < 10; d++) {
+                digits[c][d] = render(String.valueOf((char) ('0' + d)), colors[c]);
+            }
+        }
+    }
+
+    int numberWidth(int value) {
+        int n = 1;
+        for (int v = Math.abs(value) / 10; v > 0; v /= 10) n++;
+        return n * digitWidth;
+    }
+
+    // non-negative values; x, baseline as for Graphics.drawString
+    void drawNumber(Graphics2D g2, int value, int x, int baseline, int color) {
+        int n = 0;
+        int v = Math.max(0, value);
+        do {
+            scratch[n++] = v % 10;
+            v /= 10;
+        } while (v > 0 && n < scratch.length);
+        Image[] set = digits[color];
+        for (int i = n - 1; i >= 0; i--) {
+            g2.drawImage(set[scratch[i]], x, baseline - ascent, null);
+            x += digitWidth;
+        }
+    }
+
+    // callers build the text only when the key has no label yet
+    boolean hasLabel(int key) {
+        return key < labels.length && labels[key] != null;
+    }
+
+    void label(int key, String text, Color color) {
+        if (key >= labels.length) labels = Arrays.copyOf(labels, Math.max(key + 1, labels.length * 2));
+        labels[key] = render(text, color);
+    }
+
+    int labelWidth(int key) {
+        return labels[key].getWidth(null) - 1;
+    }
+
+    void drawLabel(Graphics2D g2, int key, int x, int baseline) {
+        g2.drawImage(labels[key], x, baseline - ascent, null);
+    }
+
+    // a one pixel shadow keeps the text readable over sprites and explosions
+    private Image render(String text, Color color) {
+        Rectangle2D bounds = font.getStringBounds(text, FRC);
+        int w = (int) Math.ceil(bounds.getWidth()) + 1;
+        int h = (int) Math.ceil(bounds.getHeight()) + 1;
+        BufferedImage image = gc != null
+                ? gc.createCompatibleImage(w, h, Transparency.TRANSLUCENT)
+                : new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+            g.setFont(font);
+            g.setColor(SHADOW);
+            g.drawString(text, 1, ascent + 1);
+            g.setColor(color);
+            g.drawString(text, 0, ascent);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+}
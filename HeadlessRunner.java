@@ -0,0 +1,185 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+class HeadlessRunner {
+    private int games = 1000;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long maxTicks = 60L * 60 * 20;
+    private long seed = System.nanoTime();
+    private Path record;
+    private Path replay;
+    private int repeat = 1;
+    private boolean parallel;
+    private final WaveRules rules = new WaveRules();
+    private String sweepKey;
+    private double sweepFrom;
+    private double sweepTo;
+    private double sweepStep;
+
+    public static void main(String[] args) throws Exception {
+        HeadlessRunner runner = new HeadlessRunner();
+        runner.parse(args);
+        runner.run();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--headless":
+                    break;
+                case "--games":
+                    games = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-ticks":
+                    maxTicks = Long.parseLong(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--record":
+                    record = Paths.get(args[++i]);
+                    break;
+                case "--replay":
+                    replay = Paths.get(args[++i]);
+                    break;
+                case "--repeat":
+                    repeat = Integer.parseInt(args[++i]);
+                    break;
+                case "--parallel":
+                    parallel = true;
+                    break;
+                case "--set": {
+                    String[] kv = args[++i].split("=", 2);
+                    rules.set(kv[0], Double.parseDouble(kv[1]));
+                    break;
+                }
+                case "--sweep": {
+                    String[] kv = args[++i].split("=", 2);
+                    String[] range = kv[1].split(":");
+                    sweepKey = kv[0];
+                    sweepFrom = Double.parseDouble(range[0]);
+                    sweepTo = Double.parseDouble(range[1]);
+                    sweepStep = range.length > 2 ? Double.parseDouble(range[2]) : 1;
+                    rules.set(sweepKey, sweepFrom);
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+    }
+
+    private void run() throws Exception {
+        if (replay != null) {
+            runReplay();
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            System.out.printf(Locale.ROOT, "%d games on %d threads, max %d ticks, seed %d%n", games, threads, maxTicks, seed);
+            if (sweepKey == null) {
+                report("baseline", runBatch(pool, rules));
+            } else {
+                for (double v = sweepFrom; v <= sweepTo + 1e-9; v += sweepStep) {
+                    WaveRules r = rules.copy();
+                    r.set(sweepKey, v);
+                    report(String.format(Locale.ROOT, "%s=%.3f", sweepKey, v), runBatch(pool, r));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private BatchResult runBatch(ExecutorService pool, WaveRules r) throws Exception {
+        long start = System.nanoTime();
+        List<Future<long[]>> futures = new ArrayList<>(games);
+        for (int i = 0; i < games; i++) {
+            long gameSeed = seed + i;
+            Path gameRecord = i == 0 ? record : null;
+            futures.add(pool.submit(() -> playGame(r, gameSeed, gameRecord)));
+        }
+        BatchResult result = new BatchResult();
+        for (Future<long[]> f : futures) {
+            long[] game = f.get();
+            result.add((int) game[0], game[1]);
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private long[] playGame(WaveRules r, long gameSeed, Path gameRecord) throws IOException {
+        Simulation sim = new Simulation(r, gameSeed);
+        sim.effectsEnabled = false;
+        if (parallel) sim.setParallel(ForkJoinPool.commonPool());
+        if (gameRecord != null) {
+            OutputStream out = Files.newOutputStream(gameRecord);
+            sim.recorder = new InputRecorder(out, gameSeed, r);
+        }
+        ScriptedPlayer player = new ScriptedPlayer();
+        sim.start();
+        while (!sim.isOver() && sim.tickCount < maxTicks) {
+            player.act(sim);
+            sim.tick();
+        }
+        if (sim.recorder != null) sim.recorder.finish(sim.tickCount, sim.stateHash());
+        return new long[] {sim.wave, sim.tickCount};
+    }
+
+    private void runReplay() throws IOException {
+        for (int i = 0; i < repeat; i++) {
+            ReplayPlayer player = ReplayPlayer.load(replay);
+            Simulation sim = player.createSimulation();
+            sim.effectsEnabled = false;
+            if (parallel) sim.setParallel(ForkJoinPool.commonPool());
+            long start = System.nanoTime();
+            sim.start();
+            while (true) {
+                player.advance(sim);
+                if (player.isFinished()) break;
+                sim.tick();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            String verdict = player.divergedAt < 0 ? "bit-exact" : "DIVERGED at tick " + player.divergedAt;
+            System.out.printf(Locale.ROOT, "replay %s: wave %d, %d ticks in %.3fs (%.0f ticks/s), %s%n",
+                    replay.getFileName(), sim.wave, sim.tickCount, seconds, sim.tickCount / seconds, verdict);
+        }
+    }
+
+    private static void report(String label, BatchResult r) {
+        double seconds = r.elapsedNanos / 1e9;
+        System.out.printf(Locale.ROOT, "%-24s waves avg %.2f min %d max %d | %d ticks in %.2fs (%.0f ticks/s)%n",
+                label, r.waveSum / (double) r.games, r.minWave, r.maxWave, r.ticks, seconds, r.ticks / seconds);
+    }
+
+    private static class BatchResult {
+        int games;
+        long waveSum;
+        int minWave = Integer.MAX_VALUE;
+        int maxWave;
+        long ticks;
+        long elapsedNanos;
+
+        void add(int wave, long gameTicks) {
+            games++;
+            waveSum += wave;
+            minWave = Math.min(minWave, wave);
+            maxWave = Math.max(maxWave, wave);
+            ticks += gameTicks;
+        }
+    }
+}
@@ -1,21 +1,38 @@
 import java.awt.Color;
+import java.nio.ByteBuffer;
 
 public class Hero extends Entity {
+    static final int SNAPSHOT_BYTES = Entity.SNAPSHOT_BYTES + 3 * 8 + 3 * 4;
+
+    final int id;
     final String name;
+    final HeroKind kind;
     final Color color;
     final AbilityType ability;
     private final double abilityCooldown;
-    private long lastAbilityTime;
+    private double abilityTimer;
     double lastDirX = 1;
     double lastDirY = 0;
+    int target = -1;
+    // steering from a networked player, -1..1 per axis
+    int moveX;
+    int moveY;
 
-    Hero(String name, AbilityType ability, double abilityCooldown, double x, double y, Color color, int maxHp, int damage, double attackSpeed) {
+    Hero(int id, String name, HeroKind kind, AbilityType ability, double abilityCooldown, double x, double y, int maxHp, int damage, double attackSpeed) {
         super(x, y, maxHp, damage, 90, 1.0 / attackSpeed);
+        this.id = id;
         this.name = name;
-        this.color = color;
+        this.kind = kind;
+        this.color = kind.color;
         this.ability = ability;
         this.abilityCooldown = abilityCooldown;
-        this.lastAbilityTime = 0;
+        this.abilityTimer = 0;
+    }
+
+    @Override
+    void update() {
+        super.update();
+        if (abilityTimer > 0) abilityTimer = Math.max(0, abilityTimer - 1.0 / 60.0);
     }
 
     void setLastMove(double dx, double dy) {
@@ -28,12 +45,33 @@ public class Hero extends Entity {
     }
 
     void useAbility() {
-        lastAbilityTime = System.currentTimeMillis();
+        abilityTimer = abilityCooldown;
     }
 
     double getAbilityCooldownRemaining() {
-        if (lastAbilityTime == 0) return 0;
-        double elapsed = (System.currentTimeMillis() - lastAbilityTime) / 1000.0;
-        return Math.max(0, abilityCooldown - elapsed);
+        return abilityTimer;
+    }
+
+    // network clients mirror the server's cooldown for the HUD
+    void setAbilityCooldownRemaining(double seconds) {
+        abilityTimer = seconds;
+    }
+
+    @Override
+    void write(ByteBuffer out) {
+        super.write(out);
+        out.putDouble(abilityTimer).putDouble(lastDirX).putDouble(lastDirY);
+        out.putInt(target).putInt(moveX).putInt(moveY);
+    }
+
+    @Override
+    void read(ByteBuffer in) {
+        super.read(in);
+        abilityTimer = in.getDouble();
+        lastDirX = in.getDouble();
+        lastDirY = in.getDouble();
+        target = in.getInt();
+        moveX = in.getInt();
+        moveY = in.getInt();
     }
 }
@@ -0,0 +1,30 @@
+// a hero as the bestiary describes it; each game makes its own Hero from it
+class HeroArchetype {
+    final String name;
+    final HeroKind kind;
+    final AbilityType ability;
+    final double abilityCooldown;
+    // from the centre of the world
+    final double offsetX;
+    final double offsetY;
+    final int maxHp;
+    final int damage;
+    final double attackSpeed;
+
+    HeroArchetype(String name, HeroKind kind, AbilityType ability, double abilityCooldown, double offsetX, double offsetY,
+                  int maxHp, int damage, double attackSpeed) {
+        this.name = name;
+        this.kind = kind;
+        this.ability = ability;
+        this.abilityCooldown = abilityCooldown;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.maxHp = maxHp;
+        this.damage = damage;
+        this.attackSpeed = attackSpeed;
+    }
+
+    Hero create(int id, double centerX, double centerY) {
+        return new Hero(id, name, kind, ability, abilityCooldown, centerX + offsetX, centerY + offsetY, maxHp, damage, attackSpeed);
+    }
+}
@@ -0,0 +1,13 @@
+import java.awt.Color;
+
+public enum HeroKind {
+    TANK(new Color(64, 150, 255)),
+    ROGUE(new Color(255, 120, 90)),
+    MAGE(new Color(170, 110, 255));
+
+    final Color color;
+
+    HeroKind(Color color) {
+        this.color = color;
+    }
+}
@@ -0,0 +1,62 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+// single producer (the EDT), single consumer (whoever ticks the simulation)
+class InputQueue {
+    static final int KEY_DOWN = 1;
+    static final int KEY_UP = 2;
+
+    interface Handler {
+        void event(int type, int keyCode, long nanos);
+    }
+
+    private final int mask;
+    private final int[] types;
+    private final int[] keyCodes;
+    private final long[] stamps;
+    // tail is only written by the producer and head only by the consumer; lazySet publishes the
+    // slot contents before the index that makes them visible
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private long cachedHead;
+    private volatile long dropped;
+
+    InputQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        types = new int[size];
+        keyCodes = new int[size];
+        stamps = new long[size];
+    }
+
+    boolean offer(int type, int keyCode, long nanos) {
+        long t = tail.get();
+        if (t - cachedHead > mask) {
+            cachedHead = head.get();
+            if (t - cachedHead > mask) {
+                dropped++;
+                return false;
+            }
+        }
+        int i = (int) t & mask;
+        types[i] = type;
+        keyCodes[i] = keyCode;
+        stamps[i] = nanos;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    int drain(Handler handler) {
+        long h = head.get();
+        long t = tail.get();
+        for (long n = h; n < t; n++) {
+            int i = (int) n & mask;
+            handler.event(types[i], keyCodes[i], stamps[i]);
+        }
+        head.lazySet(t);
+        return (int) (t - h);
+    }
+
+    long dropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,94 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+class InputRecorder implements Closeable {
+    static final int MAGIC = 0x53445250;
+    static final int VERSION = 7;
+    static final int CHECKSUM_INTERVAL = 60;
+
+    static final int OP_MOVE = 1;
+    static final int OP_SELECT = 2;
+    static final int OP_ABILITY = 3;
+    static final int OP_CHECKSUM = 4;
+    static final int OP_END = 5;
+
+    private final DataOutputStream out;
+    private long lastTick = 0;
+    private int lastMove = moveCode(0, 0);
+
+    InputRecorder(OutputStream stream, long seed, WaveRules rules) {
+        out = new DataOutputStream(new BufferedOutputStream(stream));
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(seed);
+            rules.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static int moveCode(int dx, int dy) {
+        return (Integer.signum(dx) + 1) * 3 + Integer.signum(dy) + 1;
+    }
+
+    void move(long tick, int dx, int dy) {
+        int code = moveCode(dx, dy);
+        if (code == lastMove) return;
+        lastMove = code;
+        event(tick, OP_MOVE, code);
+    }
+
+    void select(long tick, int index) {
+        event(tick, OP_SELECT, index);
+    }
+
+    void ability(long tick) {
+        event(tick, OP_ABILITY, -1);
+    }
+
+    void checksum(long tick, long hash) {
+        event(tick, OP_CHECKSUM, -1);
+        try {
+            out.writeLong(hash);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void finish(long tick, long hash) {
+        checksum(tick, hash);
+        event(tick, OP_END, -1);
+        close();
+    }
+
+    @Override
+    public void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // each event is a varint tick delta, an op byte and an optional argument byte
+    private void event(long tick, int op, int arg) {
+        try {
+            long delta = tick - lastTick;
+            lastTick = tick;
+            while ((delta & ~0x7FL) != 0) {
+                out.writeByte((int) (delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            out.writeByte((int) delta);
+            out.writeByte(op);
+            if (arg >= 0) out.writeByte(arg);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
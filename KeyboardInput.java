@@ -0,0 +1,164 @@
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+class KeyboardInput implements KeyListener {
+    private static final int REWIND_TICKS = 180;
+
+    private final Simulation sim;
+    private final ReplayPlayer replay;
+    // set when playing on a co-op server: input goes over the network and sim is the client's mirror
+    private final CoopClient net;
+    private final InputQueue events = new InputQueue(256);
+    private final InputQueue.Handler apply = this::apply;
+    private final InputQueue.Handler discard = this::discard;
+    private volatile boolean paused = false;
+    private final SnapshotRing history = new SnapshotRing(REWIND_TICKS + 1);
+    private ByteBuffer quickSave;
+
+    // only touched by the ticking thread
+    private boolean up;
+    private boolean down;
+    private boolean left;
+    private boolean right;
+    private int tapX;
+    private int tapY;
+    private boolean ability;
+
+    KeyboardInput(Simulation sim, ReplayPlayer replay, CoopClient net) {
+        this.sim = sim;
+        this.replay = replay;
+        this.net = net;
+    }
+
+    boolean isRemote() {
+        return net != null;
+    }
+
+    boolean isPaused() {
+        return paused || (replay != null && replay.isFinished());
+    }
+
+    // runs right before each tick: key events are applied in the order they happened
+    void beforeTick() {
+        if (canRollBack()) history.capture(sim);
+        tapX = 0;
+        tapY = 0;
+        events.drain(apply);
+        if (replay != null) {
+            replay.advance(sim);
+            return;
+        }
+
+        int dx = (right ? 1 : 0) - (left ? 1 : 0);
+        int dy = (down ? 1 : 0) - (up ? 1 : 0);
+        // a key pressed and released within one tick still moves for that tick
+        if (dx == 0) dx = tapX;
+        if (dy == 0) dy = tapY;
+        if (net != null) {
+            exchange(dx, dy);
+            return;
+        }
+        sim.setMove(dx, dy);
+    }
+
+    // keys pressed while paused would all fire on the first tick after; only what is held carries
+    // over, so movement picks up where the keys are and nothing else does
+    void whilePaused() {
+        events.drain(discard);
+    }
+
+    private void exchange(int dx, int dy) {
+        try {
+            net.poll();
+            net.send(dx, dy, ability);
+            ability = false;
+        } catch (IOException e) {
+            System.err.println("Lost the connection to the server: " + e.getMessage());
+            paused = true;
+        }
+    }
+
+    private void apply(int type, int keyCode, long nanos) {
+        sim.profiler.record(ProfilePhase.INPUT_LATENCY, nanos);
+        boolean pressed = type == InputQueue.KEY_DOWN;
+        hold(keyCode, pressed);
+        if (!pressed) return;
+        switch (keyCode) {
+            case KeyEvent.VK_W: tapY = -1; break;
+            case KeyEvent.VK_S: tapY = 1; break;
+            case KeyEvent.VK_A: tapX = -1; break;
+            case KeyEvent.VK_D: tapX = 1; break;
+            default: break;
+        }
+        if (replay != null) return;
+        if (net != null) {
+            if (keyCode == KeyEvent.VK_SPACE) ability = true;
+            return;
+        }
+        // 1-9 pick among the living heroes, however many the bestiary has
+        int index = keyCode - KeyEvent.VK_1;
+        if (index >= 0 && index < 9 && index < sim.heroes.size()) sim.selectHero(index);
+        if (keyCode == KeyEvent.VK_SPACE) sim.triggerAbility();
+        if (!canRollBack()) return;
+        if (keyCode == KeyEvent.VK_F5) saveQuick();
+        if (keyCode == KeyEvent.VK_F9) loadQuick();
+        if (keyCode == KeyEvent.VK_BACK_SPACE) history.rewind(sim, REWIND_TICKS);
+    }
+
+    private void discard(int type, int keyCode, long nanos) {
+        hold(keyCode, type == InputQueue.KEY_DOWN);
+    }
+
+    private void hold(int keyCode, boolean pressed) {
+        switch (keyCode) {
+            case KeyEvent.VK_W: up = pressed; break;
+            case KeyEvent.VK_S: down = pressed; break;
+            case KeyEvent.VK_A: left = pressed; break;
+            case KeyEvent.VK_D: right = pressed; break;
+            default: break;
+        }
+    }
+
+    // a recording, a replay or a server can't follow the game back in time
+    private boolean canRollBack() {
+        return replay == null && net == null && sim.recorder == null;
+    }
+
+    private void saveQuick() {
+        int needed = sim.snapshotBytes();
+        if (quickSave == null || quickSave.capacity() < needed) quickSave = ByteBuffer.allocateDirect(needed);
+        quickSave.clear();
+        sim.snapshot(quickSave);
+        quickSave.flip();
+    }
+
+    private void loadQuick() {
+        if (quickSave == null) return;
+        quickSave.rewind();
+        sim.restore(quickSave);
+        history.clear();
+    }
+
+    @Override
+    public void keyPressed(KeyEvent e) {
+        long now = System.nanoTime();
+        int code = e.getKeyCode();
+        // window and profiler keys act immediately, they don't touch the simulation
+        if (code == KeyEvent.VK_P) paused = !paused;
+        if (code == KeyEvent.VK_F3) sim.profiler.toggleOverlay();
+        if (code == KeyEvent.VK_F4) sim.profiler.toggleCsv();
+        events.offer(InputQueue.KEY_DOWN, code, now);
+    }
+
+    @Override
+    public void keyReleased(KeyEvent e) {
+        events.offer(InputQueue.KEY_UP, e.getKeyCode(), System.nanoTime());
+    }
+
+    @Override
+    public void keyTyped(KeyEvent e) {
+        // unused
+    }
+}
@@ -0,0 +1,60 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(index(nanos));
+        long m;
+        while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos)) {
+            // retry
+        }
+    }
+
+    // moves every bucket into the caller's array and returns the max seen since the last drain
+    long drainTo(long[] into) {
+        for (int i = 0; i < BUCKETS; i++) {
+            into[i] = counts.getAndSet(i, 0);
+        }
+        return max.getAndSet(0);
+    }
+
+    static long total(long[] counts) {
+        long total = 0;
+        for (long c : counts) total += c;
+        return total;
+    }
+
+    static long percentile(long[] counts, long total, double p) {
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(total * p);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return lowerBound(i);
+        }
+        return lowerBound(BUCKETS - 1);
+    }
+
+    // log-linear buckets: 8 sub-buckets per power of two, so ~12% worst-case error
+    static int index(long v) {
+        if (v < SUB_BUCKETS) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exp = index / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        return (1L << exp) | ((long) sub << (exp - SUB_BITS));
+    }
+}
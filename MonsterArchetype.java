@@ -0,0 +1,49 @@
+import java.awt.Color;
+
+// what every monster of a kind shares; monsters only keep the kind's index into the bestiary.
+// Stats are relative to the wave curve in WaveRules, so a kind keeps up with the waves
+class MonsterArchetype {
+    enum Shape { DISC, SQUARE, DIAMOND }
+
+    final String name;
+    final double hpScale;
+    final double hpBonus;
+    final double damageScale;
+    final double damageBonus;
+    final double rangeBonus;
+    final double speedScale;
+    final double attackCooldown;
+    final Color color;
+    final Shape shape;
+
+    MonsterArchetype(String name, double hpScale, double hpBonus, double damageScale, double damageBonus, double rangeBonus,
+                     double speedScale, double attackCooldown, Color color, Shape shape) {
+        this.name = name;
+        this.hpScale = hpScale;
+        this.hpBonus = hpBonus;
+        this.damageScale = damageScale;
+        this.damageBonus = damageBonus;
+        this.rangeBonus = rangeBonus;
+        this.speedScale = speedScale;
+        this.attackCooldown = attackCooldown;
+        this.color = color;
+        this.shape = shape;
+    }
+
+    int maxHp(WaveRules rules, int wave) {
+        return (int) (rules.monsterHp(wave) * hpScale + hpBonus);
+    }
+
+    int damage(WaveRules rules, int wave) {
+        return (int) (rules.monsterDamage(wave) * damageScale + damageBonus);
+    }
+
+    double range(WaveRules rules, int wave) {
+        return rules.monsterRange(wave) + rangeBonus;
+    }
+
+    // tougher monsters walk faster, up to twice the base pace
+    double speed(int maxHp) {
+        return (1.2 + Math.min(1.2, maxHp / 200.0)) * speedScale;
+    }
+}
@@ -0,0 +1,269 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+class MonsterStore {
+    private static final int ID_BITS = 20;
+    private static final int ID_MASK = (1 << ID_BITS) - 1;
+    private static final double STEP = 1.0 / 60.0;
+
+    int count;
+    double[] x;
+    double[] y;
+    double[] prevX;
+    double[] prevY;
+    double[] nextX;
+    double[] nextY;
+    double[] stunTimer;
+    double[] attackTimer;
+    int[] hp;
+    int[] target;
+    // index into the bestiary's monsters; everything else about the kind comes from table
+    byte[] kind;
+    // set when the current target must be dropped before the next scheduled re-plan
+    boolean[] replan;
+    private int[] idOfSlot;
+
+    private int[] slotOfId;
+    private int[] generation;
+    private int[] freeIds;
+    private int freeCount;
+    private int nextId;
+
+    // the current wave's stats by kind, shared by every monster alive
+    SpawnTable table;
+
+    MonsterStore(int capacity) {
+        allocate(Math.max(16, capacity));
+    }
+
+    // handle = generation << 20 | id; ids are recycled, so the generation catches stale handles
+    int add(double mx, double my, int mKind) {
+        if (count == x.length) allocate(x.length * 2);
+        int id = freeCount > 0 ? freeIds[--freeCount] : nextId++;
+        if (id > ID_MASK) throw new IllegalStateException("Too many monsters");
+        int i = count++;
+        x[i] = mx;
+        y[i] = my;
+        prevX[i] = mx;
+        prevY[i] = my;
+        stunTimer[i] = 0;
+        attackTimer[i] = 0;
+        hp[i] = table.maxHp[mKind];
+        target[i] = -1;
+        kind[i] = (byte) mKind;
+        replan[i] = true;
+        idOfSlot[i] = id;
+        slotOfId[id] = i;
+        return handle(i);
+    }
+
+    int handle(int slot) {
+        int id = idOfSlot[slot];
+        return (generation[id] << ID_BITS) | id;
+    }
+
+    // stable for the monster's lifetime, unlike its slot
+    int id(int slot) {
+        return idOfSlot[slot];
+    }
+
+    // -1 when the monster behind the handle has been removed
+    int slot(int handle) {
+        if (handle < 0) return -1;
+        int id = handle & ID_MASK;
+        if (id >= nextId || generation[id] != handle >>> ID_BITS) return -1;
+        return slotOfId[id];
+    }
+
+    int maxHp(int slot) {
+        return table.maxHp[kind[slot]];
+    }
+
+    int damage(int slot) {
+        return table.damage[kind[slot]];
+    }
+
+    double range(int slot) {
+        return table.range[kind[slot]];
+    }
+
+    void savePositions() {
+        System.arraycopy(x, 0, prevX, 0, count);
+        System.arraycopy(y, 0, prevY, 0, count);
+    }
+
+    void update() {
+        for (int i = 0; i < count; i++) {
+            if (attackTimer[i] > 0) attackTimer[i] -= STEP;
+            if (stunTimer[i] > 0) {
+                stunTimer[i] -= STEP;
+                if (stunTimer[i] <= 0) replan[i] = true;
+            }
+        }
+    }
+
+    void stun(int slot, double seconds) {
+        stunTimer[slot] = Math.max(stunTimer[slot], seconds);
+    }
+
+    boolean isStunned(int slot) {
+        return stunTimer[slot] > 0;
+    }
+
+    boolean canAttack(int slot) {
+        return attackTimer[slot] <= 0;
+    }
+
+    void resetAttack(int slot) {
+        attackTimer[slot] = table.attackCooldown[kind[slot]];
+    }
+
+    // movement writes the back buffer; swapPositions() publishes it once every monster has acted
+    void stepToward(int slot, double tx, double ty) {
+        double dx = tx - x[slot];
+        double dy = ty - y[slot];
+        double len = Math.sqrt(dx * dx + dy * dy);
+        if (len == 0) {
+            hold(slot);
+            return;
+        }
+        step(slot, dx / len, dy / len);
+    }
+
+    void step(int slot, double dx, double dy) {
+        double speed = table.speed[kind[slot]];
+        nextX[slot] = x[slot] + dx * speed;
+        nextY[slot] = y[slot] + dy * speed;
+    }
+
+    void hold(int slot) {
+        nextX[slot] = x[slot];
+        nextY[slot] = y[slot];
+    }
+
+    void swapPositions() {
+        double[] t = x;
+        x = nextX;
+        nextX = t;
+        t = y;
+        y = nextY;
+        nextY = t;
+    }
+
+    int removeDead() {
+        int removed = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            if (hp[i] <= 0) {
+                remove(i);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    // swap-and-pop: the last monster moves into the freed slot and keeps its handle
+    void remove(int slot) {
+        int id = idOfSlot[slot];
+        generation[id] = (generation[id] + 1) & (Integer.MAX_VALUE >>> ID_BITS);
+        freeIds[freeCount++] = id;
+
+        int last = --count;
+        if (slot != last) {
+            x[slot] = x[last];
+            y[slot] = y[last];
+            prevX[slot] = prevX[last];
+            prevY[slot] = prevY[last];
+            stunTimer[slot] = stunTimer[last];
+            attackTimer[slot] = attackTimer[last];
+            hp[slot] = hp[last];
+            target[slot] = target[last];
+            kind[slot] = kind[last];
+            replan[slot] = replan[last];
+            idOfSlot[slot] = idOfSlot[last];
+            slotOfId[idOfSlot[slot]] = slot;
+        }
+    }
+
+    int snapshotBytes() {
+        return 3 * 4 + (nextId + freeCount) * 4 + count * (6 * 8 + 3 * 4 + 2);
+    }
+
+    // nextX/nextY are scratch between ticks, slotOfId follows from idOfSlot and the table from the
+    // wave, so none of them is written
+    void write(ByteBuffer out) {
+        out.putInt(count).putInt(nextId).putInt(freeCount);
+        for (int id = 0; id < nextId; id++) out.putInt(generation[id]);
+        for (int i = 0; i < freeCount; i++) out.putInt(freeIds[i]);
+        for (int i = 0; i < count; i++) {
+            out.putDouble(x[i]).putDouble(y[i]).putDouble(prevX[i]).putDouble(prevY[i]);
+            out.putDouble(stunTimer[i]).putDouble(attackTimer[i]);
+            out.putInt(hp[i]).putInt(target[i]).putInt(idOfSlot[i]);
+            out.put(kind[i]).put(replan[i] ? (byte) 1 : 0);
+        }
+    }
+
+    void read(ByteBuffer in) {
+        count = in.getInt();
+        nextId = in.getInt();
+        freeCount = in.getInt();
+        int needed = Math.max(count, nextId);
+        if (needed > x.length) allocate(Math.max(needed, x.length * 2));
+        for (int id = 0; id < nextId; id++) generation[id] = in.getInt();
+        for (int i = 0; i < freeCount; i++) freeIds[i] = in.getInt();
+        for (int i = 0; i < count; i++) {
+            x[i] = in.getDouble();
+            y[i] = in.getDouble();
+            prevX[i] = in.getDouble();
+            prevY[i] = in.getDouble();
+            stunTimer[i] = in.getDouble();
+            attackTimer[i] = in.getDouble();
+            hp[i] = in.getInt();
+            target[i] = in.getInt();
+            idOfSlot[i] = in.getInt();
+            kind[i] = in.get();
+            replan[i] = in.get() != 0;
+            slotOfId[idOfSlot[i]] = i;
+        }
+    }
+
+    void clear() {
+        while (count > 0) {
+            remove(count - 1);
+        }
+    }
+
+    private void allocate(int capacity) {
+        x = grow(x, capacity);
+        y = grow(y, capacity);
+        prevX = grow(prevX, capacity);
+        prevY = grow(prevY, capacity);
+        nextX = grow(nextX, capacity);
+        nextY = grow(nextY, capacity);
+        stunTimer = grow(stunTimer, capacity);
+        attackTimer = grow(attackTimer, capacity);
+        hp = grow(hp, capacity);
+        target = grow(target, capacity);
+        kind = grow(kind, capacity);
+        replan = grow(replan, capacity);
+        idOfSlot = grow(idOfSlot, capacity);
+        slotOfId = grow(slotOfId, capacity);
+        generation = grow(generation, capacity);
+        freeIds = grow(freeIds, capacity);
+    }
+
+    private static double[] grow(double[] a, int capacity) {
+        return a == null ? new double[capacity] : Arrays.copyOf(a, capacity);
+    }
+
+    private static boolean[] grow(boolean[] a, int capacity) {
+        return a == null ? new boolean[capacity] : Arrays.copyOf(a, capacity);
+    }
+
+    private static int[] grow(int[] a, int capacity) {
+        return a == null ? new int[capacity] : Arrays.copyOf(a, capacity);
+    }
+
+    private static byte[] grow(byte[] a, int capacity) {
+        return a == null ? new byte[capacity] : Arrays.copyOf(a, capacity);
+    }
+}
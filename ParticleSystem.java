@@ -0,0 +1,165 @@
+import java.awt.Color;
+
+class ParticleSystem {
+    private static final int MAX_COLORS = 32;
+    private static final double STEP = 1.0 / 60.0;
+
+    final int particleCapacity;
+    // lowered by the quality governor; live particles above the budget just expire
+    int particleBudget;
+    int particleCount;
+    final double[] x;
+    final double[] y;
+    final double[] prevX;
+    final double[] prevY;
+    final double[] vx;
+    final double[] vy;
+    final double[] size;
+    final double[] life;
+    final int[] color;
+    final int[] alpha;
+
+    final int ringCapacity;
+    int ringBudget;
+    int ringCount;
+    final double[] ringX;
+    final double[] ringY;
+    final double[] radius;
+    final double[] expandRate;
+    final double[] ringLife;
+    final double[] thickness;
+    final int[] ringColor;
+    final int[] ringAlpha;
+
+    private final Color[] palette = new Color[MAX_COLORS];
+    private final Color[][] shades = new Color[MAX_COLORS][];
+    private int paletteSize;
+
+    ParticleSystem(int particleCapacity, int ringCapacity) {
+        this.particleCapacity = particleCapacity;
+        this.particleBudget = particleCapacity;
+        x = new double[particleCapacity];
+        y = new double[particleCapacity];
+        prevX = new double[particleCapacity];
+        prevY = new double[particleCapacity];
+        vx = new double[particleCapacity];
+        vy = new double[particleCapacity];
+        size = new double[particleCapacity];
+        life = new double[particleCapacity];
+        color = new int[particleCapacity];
+        alpha = new int[particleCapacity];
+
+        this.ringCapacity = ringCapacity;
+        this.ringBudget = ringCapacity;
+        ringX = new double[ringCapacity];
+        ringY = new double[ringCapacity];
+        radius = new double[ringCapacity];
+        expandRate = new double[ringCapacity];
+        ringLife = new double[ringCapacity];
+        thickness = new double[ringCapacity];
+        ringColor = new int[ringCapacity];
+        ringAlpha = new int[ringCapacity];
+    }
+
+    int colorIndex(Color c) {
+        for (int i = 0; i < paletteSize; i++) {
+            Color p = palette[i];
+            if (p.getRed() == c.getRed() && p.getGreen() == c.getGreen() && p.getBlue() == c.getBlue()) return i;
+        }
+        if (paletteSize == MAX_COLORS) throw new IllegalStateException("Particle palette is full");
+        palette[paletteSize] = new Color(c.getRed(), c.getGreen(), c.getBlue());
+        shades[paletteSize] = new Color[256];
+        return paletteSize++;
+    }
+
+    Color color(int index, int a) {
+        Color c = shades[index][a];
+        if (c == null) {
+            Color base = palette[index];
+            c = new Color(base.getRed(), base.getGreen(), base.getBlue(), a);
+            shades[index][a] = c;
+        }
+        return c;
+    }
+
+    void spawnParticle(double px, double py, double pvx, double pvy, double psize, double plife, int colorIndex, int a) {
+        if (particleCount >= particleBudget) return;
+        int i = particleCount++;
+        x[i] = px;
+        y[i] = py;
+        prevX[i] = px;
+        prevY[i] = py;
+        vx[i] = pvx;
+        vy[i] = pvy;
+        size[i] = psize;
+        life[i] = plife;
+        color[i] = colorIndex;
+        alpha[i] = a;
+    }
+
+    void spawnRing(double rx, double ry, double r, double rate, double rlife, double rthickness, int colorIndex, int a) {
+        if (ringCount >= ringBudget) return;
+        int i = ringCount++;
+        ringX[i] = rx;
+        ringY[i] = ry;
+        radius[i] = r;
+        expandRate[i] = rate;
+        ringLife[i] = rlife;
+        thickness[i] = rthickness;
+        ringColor[i] = colorIndex;
+        ringAlpha[i] = a;
+    }
+
+    void update() {
+        for (int i = particleCount - 1; i >= 0; i--) {
+            prevX[i] = x[i];
+            prevY[i] = y[i];
+            x[i] += vx[i];
+            y[i] += vy[i];
+            vx[i] *= 0.98;
+            vy[i] *= 0.98;
+            size[i] *= 0.96;
+            life[i] -= STEP;
+            if (life[i] <= 0) removeParticle(i);
+        }
+        for (int i = ringCount - 1; i >= 0; i--) {
+            radius[i] += expandRate[i] * STEP;
+            thickness[i] *= 0.97;
+            ringLife[i] -= STEP;
+            ringAlpha[i] = Math.max(0, (int) (ringAlpha[i] * (ringLife[i] / 0.35)));
+            if (ringLife[i] <= 0) removeRing(i);
+        }
+    }
+
+    void clear() {
+        particleCount = 0;
+        ringCount = 0;
+    }
+
+    // swap-and-pop: the last live entry takes the dead slot
+    private void removeParticle(int i) {
+        int last = --particleCount;
+        x[i] = x[last];
+        y[i] = y[last];
+        prevX[i] = prevX[last];
+        prevY[i] = prevY[last];
+        vx[i] = vx[last];
+        vy[i] = vy[last];
+        size[i] = size[last];
+        life[i] = life[last];
+        color[i] = color[last];
+        alpha[i] = alpha[last];
+    }
+
+    private void removeRing(int i) {
+        int last = --ringCount;
+        ringX[i] = ringX[last];
+        ringY[i] = ringY[last];
+        radius[i] = radius[last];
+        expandRate[i] = expandRate[last];
+        ringLife[i] = ringLife[last];
+        thickness[i] = thickness[last];
+        ringColor[i] = ringColor[last];
+        ringAlpha[i] = ringAlpha[last];
+    }
+}
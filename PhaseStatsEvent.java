@@ -0,0 +1,31 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("slicedice.PhaseStats")
+@Label("Phase Statistics")
+@Category("Slice & Dice")
+@Description("Per-second latency summary of one tick or draw phase")
+@StackTrace(false)
+class PhaseStatsEvent extends jdk.jfr.Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Samples")
+    long count;
+
+    @Label("p50")
+    @Timespan(Timespan.NANOSECONDS)
+    long p50;
+
+    @Label("p99")
+    @Timespan(Timespan.NANOSECONDS)
+    long p99;
+
+    @Label("Max")
+    @Timespan(Timespan.NANOSECONDS)
+    long max;
+}
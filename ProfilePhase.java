@@ -0,0 +1,34 @@
+public enum ProfilePhase {
+    INPUT("input"),
+    ENTITIES("entities"),
+    SPATIAL("spatial"),
+    PARTICLES("particles"),
+    PROJECTILES("projectiles"),
+    FLOW("flow"),
+    COMBAT("combat"),
+    CLEANUP("cleanup"),
+    WAVES("waves"),
+    TICK("tick"),
+    DRAW_ARENA("drawArena"),
+    DRAW_ENTITIES("drawEntities"),
+    DRAW_UI("drawUI"),
+    DRAW_FLASH("drawFlash"),
+    FRAME("frame"),
+    INPUT_LATENCY("input latency"),
+    GC("gc pause"),
+    TICK_ALLOC("tick alloc B", true),
+    FRAME_ALLOC("frame alloc B", true);
+
+    final String label;
+    // recorded in bytes rather than nanoseconds
+    final boolean bytes;
+
+    ProfilePhase(String label) {
+        this(label, false);
+    }
+
+    ProfilePhase(String label, boolean bytes) {
+        this.label = label;
+        this.bytes = bytes;
+    }
+}
@@ -0,0 +1,219 @@
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+class Profiler {
+    private static final ProfilePhase[] PHASES = ProfilePhase.values();
+    // one roller thread and one set of GC listeners for the whole process, however many simulations
+    // come and go (HeadlessRunner makes thousands); profilers are held weakly, so a finished game's
+    // is dropped along with it
+    private static final List<WeakReference<Profiler>> PROFILERS = new ArrayList<>();
+    private static final List<Profiler> LIVE = new ArrayList<>();
+    private static ScheduledExecutorService roller;
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[PHASES.length];
+    private final long[] scratch = new long[LatencyHistogram.BUCKETS];
+    private volatile boolean enabled;
+    private volatile boolean overlayVisible;
+    private volatile String[] overlayLines = new String[0];
+    private boolean rolling;
+    private PrintWriter csv;
+    private long gcPauses;
+
+    volatile int heroes;
+    volatile int monsters;
+    volatile int projectiles;
+    volatile int particles;
+    volatile int rings;
+
+    Profiler() {
+        for (int i = 0; i < PHASES.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        enabled = Boolean.getBoolean("slicedice.profile");
+        if (enabled) startRoller();
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    boolean isOverlayVisible() {
+        return overlayVisible;
+    }
+
+    String[] overlayLines() {
+        return overlayLines;
+    }
+
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    long lap(ProfilePhase phase, long since) {
+        if (!enabled) return 0;
+        long now = System.nanoTime();
+        histograms[phase.ordinal()].record(now - since);
+        return now;
+    }
+
+    void record(ProfilePhase phase, long since) {
+        if (enabled) histograms[phase.ordinal()].record(System.nanoTime() - since);
+    }
+
+    long allocated() {
+        return enabled ? AllocationMeter.allocated() : 0;
+    }
+
+    void recordAllocation(ProfilePhase phase, long since) {
+        if (enabled) histograms[phase.ordinal()].record(AllocationMeter.allocated() - since);
+    }
+
+    synchronized void toggleOverlay() {
+        overlayVisible = !overlayVisible;
+        updateEnabled();
+    }
+
+    synchronized void toggleCsv() {
+        if (csv != null) {
+            csv.close();
+            csv = null;
+        } else {
+            String name = "profile-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".csv";
+            try {
+                csv = new PrintWriter(new FileWriter(name));
+                csv.println("time_ms,phase,count,p50_us,p99_us,max_us,heroes,monsters,projectiles,particles,rings");
+            } catch (IOException e) {
+                System.err.println("Could not open " + name + ": " + e.getMessage());
+            }
+        }
+        updateEnabled();
+    }
+
+    private void updateEnabled() {
+        enabled = overlayVisible || csv != null || Boolean.getBoolean("slicedice.profile");
+        if (enabled) startRoller();
+    }
+
+    private void startRoller() {
+        if (rolling) return;
+        rolling = true;
+        synchronized (PROFILERS) {
+            PROFILERS.add(new WeakReference<>(this));
+            if (roller != null) return;
+            roller = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "profiler");
+                t.setDaemon(true);
+                return t;
+            });
+            roller.scheduleAtFixedRate(Profiler::rollAll, 1, 1, TimeUnit.SECONDS);
+            listenForGc();
+        }
+    }
+
+    private static void listenForGc() {
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (!(gc instanceof NotificationEmitter)) continue;
+            ((NotificationEmitter) gc).addNotificationListener((notification, handback) -> {
+                if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) return;
+                GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                long nanos = info.getGcInfo().getDuration() * 1_000_000L;
+                synchronized (PROFILERS) {
+                    for (int i = 0; i < PROFILERS.size(); i++) {
+                        Profiler p = PROFILERS.get(i).get();
+                        if (p != null) p.histograms[ProfilePhase.GC.ordinal()].record(nanos);
+                    }
+                }
+            }, null, null);
+        }
+    }
+
+    // on the roller thread; prunes the profilers whose simulations are gone, then rolls the rest
+    // outside the lock
+    private static void rollAll() {
+        synchronized (PROFILERS) {
+            LIVE.clear();
+            for (int i = PROFILERS.size() - 1; i >= 0; i--) {
+                Profiler p = PROFILERS.get(i).get();
+                if (p == null) {
+                    PROFILERS.remove(i);
+                } else {
+                    LIVE.add(p);
+                }
+            }
+        }
+        for (int i = 0; i < LIVE.size(); i++) {
+            LIVE.get(i).roll();
+        }
+        LIVE.clear();
+    }
+
+    private synchronized void roll() {
+        long time = System.currentTimeMillis();
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format(Locale.ROOT, "%-13s %5s %8s %8s %8s", "phase (us)", "n", "p50", "p99", "max"));
+        for (ProfilePhase phase : PHASES) {
+            long max = histograms[phase.ordinal()].drainTo(scratch);
+            long count = LatencyHistogram.total(scratch);
+            long p50 = LatencyHistogram.percentile(scratch, count, 0.50);
+            long p99 = LatencyHistogram.percentile(scratch, count, 0.99);
+            if (phase == ProfilePhase.GC) gcPauses += count;
+            if (count == 0 && phase != ProfilePhase.GC) continue;
+
+            // byte phases print as is, the time columns are in microseconds
+            double unit = phase.bytes ? 1 : 1e3;
+            lines.add(String.format(Locale.ROOT, "%-13s %5d %8.1f %8.1f %8.1f", phase.label, count, p50 / unit, p99 / unit, max / unit));
+            if (csv != null) {
+                csv.printf(Locale.ROOT, "%d,%s,%d,%.1f,%.1f,%.1f,%d,%d,%d,%d,%d%n",
+                        time, phase.label, count, p50 / unit, p99 / unit, max / unit, heroes, monsters, projectiles, particles, rings);
+            }
+
+            if (phase.bytes) {
+                commitAllocation(phase, count, p50, p99, max);
+            } else {
+                commitLatency(phase, count, p50, p99, max);
+            }
+        }
+        lines.add(String.format(Locale.ROOT, "gc pauses total %d", gcPauses));
+        if (csv != null) csv.flush();
+        overlayLines = lines.toArray(new String[0]);
+    }
+
+    private static void commitLatency(ProfilePhase phase, long count, long p50, long p99, long max) {
+        PhaseStatsEvent event = new PhaseStatsEvent();
+        if (!event.shouldCommit()) return;
+        event.phase = phase.label;
+        event.count = count;
+        event.p50 = p50;
+        event.p99 = p99;
+        event.max = max;
+        event.commit();
+    }
+
+    // byte phases get their own event, so JFR shows them as amounts rather than durations
+    private static void commitAllocation(ProfilePhase phase, long count, long p50, long p99, long max) {
+        AllocationStatsEvent event = new AllocationStatsEvent();
+        if (!event.shouldCommit()) return;
+        event.phase = phase.label;
+        event.count = count;
+        event.p50 = p50;
+        event.p99 = p99;
+        event.max = max;
+        event.commit();
+    }
+}
@@ -0,0 +1,478 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// projectiles are tested along their whole path each tick (swept circles), so a fast one can't
+// step over a monster. A volley is matched against monsters with sort-and-sweep: projectiles are
+// kept sorted by the left edge of their swept box, monsters are sorted into horizontal bands by x,
+// and each band is walked once alongside the projectiles. A handful of projectiles among many
+// monsters would pay for sorting all of them, so they ask the spatial grid instead; the hits are
+// the same either way
+class ProjectileStore {
+    private static final int BYTES = 7 * 8 + 3 * 4 + 1;
+    private static final double BAND = 64;
+    private static final double COLUMN = 16;
+    // projectiles x monsters above which sorting every monster beats a grid query per projectile;
+    // a grid query costs more the denser the monsters, so the crossover falls as they grow
+    private static final long SWEEP_WORK = 2_000_000;
+
+    private final double width;
+    private final double height;
+    private final int bands;
+    private final int columns;
+
+    int count;
+    double[] x;
+    double[] y;
+    double[] prevX;
+    double[] prevY;
+    double[] vx;
+    double[] vy;
+    double[] radius;
+    int[] damage;
+    // monsters it can still pass through; the next hit after zero stops it
+    int[] pierce;
+    // id of the hero that fired it
+    int[] owner;
+    // only on its first tick may a projectile hit a monster it starts inside
+    boolean[] fresh;
+    private boolean[] dead;
+    // told about every hit; null tells no one
+    CombatEvents events;
+
+    // where projectiles stopped this tick, for the explosions
+    int impactCount;
+    double[] impactX = new double[16];
+    double[] impactY = new double[16];
+
+    // indices sorted by the swept box's left edge; projectiles added since the last tick aren't in it yet
+    private int[] order;
+    private double[] orderKey;
+    private int orderCount;
+    private int[] remap;
+    private double[] addedKey;
+
+    private int[] monsterOrder;
+    private int[] monsterBucket;
+    private double[] sortedX;
+    private double[] sortedY;
+    private final int[] bucketStart;
+    private final int[] bucketFill;
+    private final int[] bandStart;
+    private final int[] bandCursor;
+
+    private final IntConsumer gridHit = this::gridHit;
+    private MonsterStore hitMonsters;
+    private int hitProjectile;
+    private double hitReach;
+    private int hits;
+    private double[] hitT = new double[8];
+    private int[] hitSlot = new int[8];
+
+    ProjectileStore(double width, double height, int capacity, int monsterCapacity) {
+        this.width = width;
+        this.height = height;
+        bands = (int) Math.ceil(height / BAND);
+        columns = (int) Math.ceil(width / COLUMN);
+        bucketStart = new int[bands * columns + 1];
+        bucketFill = new int[bands * columns + 1];
+        bandStart = new int[bands + 1];
+        bandCursor = new int[bands];
+        allocate(Math.max(16, capacity));
+        allocateMonsters(Math.max(16, monsterCapacity));
+    }
+
+    void add(double px, double py, double pvx, double pvy, double pradius, int pdamage, int ppierce, int powner) {
+        if (count == x.length) allocate(x.length * 2);
+        int i = count++;
+        x[i] = px;
+        y[i] = py;
+        prevX[i] = px;
+        prevY[i] = py;
+        vx[i] = pvx;
+        vy[i] = pvy;
+        radius[i] = pradius;
+        damage[i] = pdamage;
+        pierce[i] = ppierce;
+        owner[i] = powner;
+        fresh[i] = true;
+        dead[i] = false;
+    }
+
+    // moves every projectile, damages what it swept through and drops the ones that stopped or
+    // left the world; monsters don't move during this, so they are tested as still circles, and
+    // the grid is still the one built from these positions at the end of the last tick
+    void update(MonsterStore ms, SpatialGrid grid, double monsterRadius) {
+        impactCount = 0;
+        if (count == 0) return;
+        for (int i = 0; i < count; i++) {
+            prevX[i] = x[i];
+            prevY[i] = y[i];
+            x[i] += vx[i];
+            y[i] += vy[i];
+        }
+        sortProjectiles();
+        hitMonsters = ms;
+        if ((long) count * ms.count >= SWEEP_WORK) {
+            sortMonsters(ms);
+            sweep(ms, monsterRadius);
+        } else {
+            for (int k = 0; k < count; k++) {
+                int i = order[k];
+                double reach = radius[i] + monsterRadius;
+                hitProjectile = i;
+                hitReach = reach;
+                hits = 0;
+                grid.forEachInRect(orderKey[k] - monsterRadius, Math.min(prevY[i], y[i]) - reach,
+                        Math.max(prevX[i], x[i]) + reach, Math.max(prevY[i], y[i]) + reach, gridHit);
+                applyHits(i, ms);
+            }
+        }
+        hitMonsters = null;
+        for (int i = 0; i < count; i++) {
+            if (x[i] < 0 || x[i] > width || y[i] < 0 || y[i] > height) dead[i] = true;
+        }
+        compact();
+    }
+
+    private void sweep(MonsterStore ms, double monsterRadius) {
+        for (int b = 0; b < bands; b++) {
+            bandCursor[b] = bandStart[b];
+        }
+        for (int k = 0; k < count; k++) {
+            int i = order[k];
+            double reach = radius[i] + monsterRadius;
+            double minX = orderKey[k] - monsterRadius;
+            double maxX = Math.max(prevX[i], x[i]) + reach;
+            double minY = Math.min(prevY[i], y[i]) - reach;
+            double maxY = Math.max(prevY[i], y[i]) + reach;
+            int b1 = band(maxY);
+
+            hits = 0;
+            for (int b = band(minY); b <= b1; b++) {
+                // minX only grows along the order, so monsters left of it are done for good
+                int end = bandStart[b + 1];
+                int c = bandCursor[b];
+                while (c < end && sortedX[c] < minX) c++;
+                bandCursor[b] = c;
+
+                for (; c < end; c++) {
+                    double mx = sortedX[c];
+                    if (mx > maxX) break;
+                    double my = sortedY[c];
+                    if (my < minY || my > maxY) continue;
+                    int m = monsterOrder[c];
+                    if (ms.hp[m] > 0) hit(i, m, mx, my, reach);
+                }
+            }
+            applyHits(i, ms);
+        }
+    }
+
+    private void gridHit(int m) {
+        MonsterStore ms = hitMonsters;
+        if (ms.hp[m] > 0) hit(hitProjectile, m, ms.x[m], ms.y[m], hitReach);
+    }
+
+    // keeps the hits in path order; monster ids break ties, so how they were found doesn't matter
+    private void hit(int i, int m, double mx, double my, double reach) {
+        double t = entry(i, mx, my, reach);
+        if (t < 0) return;
+        if (hits == hitT.length) {
+            hitT = Arrays.copyOf(hitT, hits * 2);
+            hitSlot = Arrays.copyOf(hitSlot, hits * 2);
+        }
+        MonsterStore ms = hitMonsters;
+        int j = hits++;
+        while (j > 0 && (hitT[j - 1] > t || hitT[j - 1] == t && ms.id(hitSlot[j - 1]) > ms.id(m))) {
+            hitT[j] = hitT[j - 1];
+            hitSlot[j] = hitSlot[j - 1];
+            j--;
+        }
+        hitT[j] = t;
+        hitSlot[j] = m;
+    }
+
+    private void applyHits(int i, MonsterStore ms) {
+        fresh[i] = false;
+        for (int h = 0; h < hits; h++) {
+            int m = hitSlot[h];
+            int hp = ms.hp[m];
+            ms.hp[m] -= damage[i];
+            if (events != null) events.monsterHit(owner[i], ms, m, damage[i], hp);
+            if (pierce[i]-- > 0) continue;
+            double t = hitT[h];
+            x[i] = prevX[i] + (x[i] - prevX[i]) * t;
+            y[i] = prevY[i] + (y[i] - prevY[i]) * t;
+            impact(x[i], y[i]);
+            dead[i] = true;
+            return;
+        }
+    }
+
+    // fraction of this tick's move at which projectile i first touches the circle, or -1; a
+    // projectile already inside only counts on its first tick, otherwise it hit on the way in
+    private double entry(int i, double cx, double cy, double reach) {
+        double dx = x[i] - prevX[i];
+        double dy = y[i] - prevY[i];
+        double fx = prevX[i] - cx;
+        double fy = prevY[i] - cy;
+        double c = fx * fx + fy * fy - reach * reach;
+        if (c <= 0) return fresh[i] ? 0 : -1;
+        double a = dx * dx + dy * dy;
+        double b = fx * dx + fy * dy;
+        if (a == 0 || b >= 0) return -1;
+        double disc = b * b - a * c;
+        if (disc < 0) return -1;
+        double t = (-b - Math.sqrt(disc)) / a;
+        return t <= 1 ? t : -1;
+    }
+
+    private void impact(double ix, double iy) {
+        if (impactCount == impactX.length) {
+            impactX = Arrays.copyOf(impactX, impactCount * 2);
+            impactY = Arrays.copyOf(impactY, impactCount * 2);
+        }
+        impactX[impactCount] = ix;
+        impactY[impactCount] = iy;
+        impactCount++;
+    }
+
+    // the carried-over order is nearly sorted and insertion sort fixes it cheaply; new projectiles
+    // would each shift half of it, so they are sorted on their own and merged in
+    private void sortProjectiles() {
+        int old = orderCount;
+        for (int k = 0; k < old; k++) {
+            int i = order[k];
+            orderKey[k] = Math.min(prevX[i], x[i]) - radius[i];
+        }
+        sort(order, orderKey, old, 1);
+        orderCount = count;
+
+        int added = count - old;
+        if (added == 0) return;
+        int[] addedOrder = remap;
+        for (int a = 0; a < added; a++) {
+            int i = old + a;
+            addedOrder[a] = i;
+            addedKey[a] = Math.min(prevX[i], x[i]) - radius[i];
+        }
+        // a volley or a restore arrives in no particular order, so shell sort's long gaps go first
+        for (int gap = added / 2; gap > 1; gap = gap * 5 / 11) {
+            sort(addedOrder, addedKey, added, gap);
+        }
+        sort(addedOrder, addedKey, added, 1);
+        // merge from the back, so the old entries move straight to their final place
+        int k = old - 1;
+        int a = added - 1;
+        for (int w = count - 1; a >= 0; w--) {
+            if (k >= 0 && before(addedKey[a], addedOrder[a], orderKey[k], order[k])) {
+                order[w] = order[k];
+                orderKey[w] = orderKey[k];
+                k--;
+            } else {
+                order[w] = addedOrder[a];
+                orderKey[w] = addedKey[a];
+                a--;
+            }
+        }
+    }
+
+    // insertion sort over every gap-th entry
+    private static void sort(int[] index, double[] key, int n, int gap) {
+        for (int k = gap; k < n; k++) {
+            int i = index[k];
+            double v = key[k];
+            int j = k;
+            while (j >= gap && before(v, i, key[j - gap], index[j - gap])) {
+                index[j] = index[j - gap];
+                key[j] = key[j - gap];
+                j -= gap;
+            }
+            index[j] = i;
+            key[j] = v;
+        }
+    }
+
+    // ties go by index, which a restore reproduces, so the order never depends on history
+    private static boolean before(double key, int index, double otherKey, int otherIndex) {
+        return key < otherKey || key == otherKey && index < otherIndex;
+    }
+
+    // by band, then x: a counting sort into BAND x COLUMN buckets leaves insertion sort only the
+    // few monsters that share a bucket. Positions travel with the slot, so the sweep reads them
+    // side by side
+    private void sortMonsters(MonsterStore ms) {
+        int n = ms.count;
+        if (monsterOrder.length < n) allocateMonsters(Math.max(n, monsterOrder.length * 2));
+        int[] start = bucketStart;
+        Arrays.fill(start, 0);
+        for (int slot = 0; slot < n; slot++) {
+            int bucket = band(ms.y[slot]) * columns + column(ms.x[slot]);
+            monsterBucket[slot] = bucket;
+            start[bucket + 1]++;
+        }
+        for (int c = 0; c < start.length - 1; c++) {
+            start[c + 1] += start[c];
+        }
+        System.arraycopy(start, 0, bucketFill, 0, start.length);
+        for (int slot = 0; slot < n; slot++) {
+            int k = bucketFill[monsterBucket[slot]]++;
+            monsterOrder[k] = slot;
+            sortedX[k] = ms.x[slot];
+            sortedY[k] = ms.y[slot];
+        }
+
+        for (int b = 0; b < bands; b++) {
+            int from = start[b * columns];
+            int to = start[(b + 1) * columns];
+            bandStart[b] = from;
+            for (int k = from + 1; k < to; k++) {
+                double key = sortedX[k];
+                if (sortedX[k - 1] <= key) continue;
+                int slot = monsterOrder[k];
+                double my = sortedY[k];
+                int j = k;
+                while (j > from && sortedX[j - 1] > key) {
+                    monsterOrder[j] = monsterOrder[j - 1];
+                    sortedX[j] = sortedX[j - 1];
+                    sortedY[j] = sortedY[j - 1];
+                    j--;
+                }
+                monsterOrder[j] = slot;
+                sortedX[j] = key;
+                sortedY[j] = my;
+            }
+        }
+        bandStart[bands] = n;
+    }
+
+    private int band(double y) {
+        return Math.max(0, Math.min(bands - 1, (int) (y / BAND)));
+    }
+
+    private int column(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) (x / COLUMN)));
+    }
+
+    // keeps survivors in index order, unlike swap-and-pop, and carries the sorted order over
+    private void compact() {
+        int w = 0;
+        for (int i = 0; i < count; i++) {
+            if (dead[i]) {
+                remap[i] = -1;
+                continue;
+            }
+            remap[i] = w;
+            if (w != i) {
+                x[w] = x[i];
+                y[w] = y[i];
+                prevX[w] = prevX[i];
+                prevY[w] = prevY[i];
+                vx[w] = vx[i];
+                vy[w] = vy[i];
+                radius[w] = radius[i];
+                damage[w] = damage[i];
+                pierce[w] = pierce[i];
+                owner[w] = owner[i];
+                fresh[w] = fresh[i];
+                dead[w] = false;
+            }
+            w++;
+        }
+        if (w != count) {
+            int n = 0;
+            for (int k = 0; k < count; k++) {
+                int to = remap[order[k]];
+                if (to >= 0) order[n++] = to;
+            }
+        }
+        count = w;
+        orderCount = w;
+    }
+
+    // for mirrors that are handed positions rather than simulating them
+    void resize(int n) {
+        if (n > x.length) allocate(Math.max(n, x.length * 2));
+        count = n;
+        orderCount = 0;
+    }
+
+    void clear() {
+        count = 0;
+        orderCount = 0;
+        impactCount = 0;
+    }
+
+    int snapshotBytes() {
+        return 4 + count * BYTES;
+    }
+
+    void write(ByteBuffer out) {
+        out.putInt(count);
+        for (int i = 0; i < count; i++) {
+            out.putDouble(x[i]).putDouble(y[i]).putDouble(prevX[i]).putDouble(prevY[i]);
+            out.putDouble(vx[i]).putDouble(vy[i]).putDouble(radius[i]);
+            out.putInt(damage[i]).putInt(pierce[i]).putInt(owner[i]);
+            out.put(fresh[i] ? (byte) 1 : 0);
+        }
+    }
+
+    // the sorted order isn't saved; it is rebuilt from scratch and sorts to the same result
+    void read(ByteBuffer in) {
+        resize(in.getInt());
+        for (int i = 0; i < count; i++) {
+            x[i] = in.getDouble();
+            y[i] = in.getDouble();
+            prevX[i] = in.getDouble();
+            prevY[i] = in.getDouble();
+            vx[i] = in.getDouble();
+            vy[i] = in.getDouble();
+            radius[i] = in.getDouble();
+            damage[i] = in.getInt();
+            pierce[i] = in.getInt();
+            owner[i] = in.getInt();
+            fresh[i] = in.get() != 0;
+            dead[i] = false;
+        }
+        impactCount = 0;
+    }
+
+    private void allocate(int capacity) {
+        x = grow(x, capacity);
+        y = grow(y, capacity);
+        prevX = grow(prevX, capacity);
+        prevY = grow(prevY, capacity);
+        vx = grow(vx, capacity);
+        vy = grow(vy, capacity);
+        radius = grow(radius, capacity);
+        damage = grow(damage, capacity);
+        pierce = grow(pierce, capacity);
+        owner = grow(owner, capacity);
+        fresh = grow(fresh, capacity);
+        dead = grow(dead, capacity);
+        order = grow(order, capacity);
+        orderKey = grow(orderKey, capacity);
+        remap = grow(remap, capacity);
+        addedKey = grow(addedKey, capacity);
+    }
+
+    private void allocateMonsters(int capacity) {
+        monsterOrder = grow(monsterOrder, capacity);
+        monsterBucket = grow(monsterBucket, capacity);
+        sortedX = grow(sortedX, capacity);
+        sortedY = grow(sortedY, capacity);
+    }
+
+    private static double[] grow(double[] a, int capacity) {
+        return a == null ? new double[capacity] : Arrays.copyOf(a, capacity);
+    }
+
+    private static boolean[] grow(boolean[] a, int capacity) {
+        return a == null ? new boolean[capacity] : Arrays.copyOf(a, capacity);
+    }
+
+    private static int[] grow(int[] a, int capacity) {
+        return a == null ? new int[capacity] : Arrays.copyOf(a, capacity);
+    }
+}
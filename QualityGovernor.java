@@ -0,0 +1,83 @@
+class QualityGovernor {
+    static final int MAX_LEVEL = 4;
+    // render work may use this share of the frame before quality drops
+    private static final double BUDGET_SHARE = 0.5;
+    private static final double HEADROOM_SHARE = 0.2;
+    private static final int DEGRADE_FRAMES = 20;
+    private static final int RESTORE_FRAMES = 180;
+
+    private final long budgetNanos;
+    private final long headroomNanos;
+    private final boolean pinned;
+    private int level;
+    private double smoothedNanos;
+    private int overFrames;
+    private int underFrames;
+
+    QualityGovernor(int fps) {
+        long frameNanos = 1_000_000_000L / Math.max(1, fps);
+        budgetNanos = (long) (frameNanos * BUDGET_SHARE);
+        headroomNanos = (long) (frameNanos * HEADROOM_SHARE);
+        // -Dslicedice.quality=0..4 pins a level, mostly for comparing them
+        Integer fixed = Integer.getInteger("slicedice.quality");
+        pinned = fixed != null;
+        level = pinned ? Math.max(0, Math.min(MAX_LEVEL, fixed)) : 0;
+    }
+
+    // one step at a time: a burst has to last DEGRADE_FRAMES, and quality only comes back after
+    // RESTORE_FRAMES of clear headroom, so the level doesn't oscillate around the budget
+    void record(long renderNanos) {
+        smoothedNanos = smoothedNanos == 0 ? renderNanos : smoothedNanos * 0.9 + renderNanos * 0.1;
+        if (pinned) return;
+        if (smoothedNanos > budgetNanos) {
+            underFrames = 0;
+            if (++overFrames >= DEGRADE_FRAMES && level < MAX_LEVEL) {
+                level++;
+                overFrames = 0;
+            }
+        } else if (smoothedNanos < headroomNanos) {
+            overFrames = 0;
+            if (++underFrames >= RESTORE_FRAMES && level > 0) {
+                level--;
+                underFrames = 0;
+            }
+        } else {
+            overFrames = 0;
+            underFrames = 0;
+        }
+    }
+
+    int level() {
+        return level;
+    }
+
+    double smoothedMillis() {
+        return smoothedNanos / 1e6;
+    }
+
+    int particleBudget(int capacity) {
+        if (level >= 4) return capacity / 8;
+        if (level >= 1) return capacity / 4;
+        return capacity;
+    }
+
+    int ringBudget(int capacity) {
+        if (level >= 4) return capacity / 8;
+        if (level >= 1) return capacity / 4;
+        return capacity;
+    }
+
+    int dashTrailSteps() {
+        return level >= 1 ? 6 : 12;
+    }
+
+    boolean antialias() {
+        return level < 2;
+    }
+
+    double renderScale() {
+        if (level >= 4) return 0.5;
+        if (level >= 3) return 0.75;
+        return 1;
+    }
+}
@@ -0,0 +1,89 @@
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class ReplayPlayer {
+    final long seed;
+    final WaveRules rules;
+    private final DataInputStream in;
+    private long nextTick;
+    private int nextOp;
+    private boolean finished;
+    long divergedAt = -1;
+
+    private ReplayPlayer(byte[] data) throws IOException {
+        in = new DataInputStream(new ByteArrayInputStream(data));
+        if (in.readInt() != InputRecorder.MAGIC) throw new IOException("Not a replay file");
+        int version = in.readUnsignedByte();
+        if (version != InputRecorder.VERSION) throw new IOException("Unsupported replay version " + version);
+        seed = in.readLong();
+        rules = WaveRules.read(in);
+        readHeader();
+    }
+
+    static ReplayPlayer load(Path path) throws IOException {
+        return new ReplayPlayer(Files.readAllBytes(path));
+    }
+
+    Simulation createSimulation() {
+        return new Simulation(rules.copy(), seed);
+    }
+
+    boolean isFinished() {
+        return finished;
+    }
+
+    // applies every event stamped with the simulation's current tick; call before each tick
+    void advance(Simulation sim) {
+        try {
+            while (!finished && nextTick == sim.tickCount) {
+                switch (nextOp) {
+                    case InputRecorder.OP_MOVE: {
+                        int code = in.readUnsignedByte();
+                        sim.setMove(code / 3 - 1, code % 3 - 1);
+                        break;
+                    }
+                    case InputRecorder.OP_SELECT:
+                        sim.selectHero(in.readUnsignedByte());
+                        break;
+                    case InputRecorder.OP_ABILITY:
+                        sim.triggerAbility();
+                        break;
+                    case InputRecorder.OP_CHECKSUM: {
+                        long expected = in.readLong();
+                        if (divergedAt < 0 && expected != sim.stateHash()) divergedAt = sim.tickCount;
+                        break;
+                    }
+                    case InputRecorder.OP_END:
+                        finished = true;
+                        return;
+                    default:
+                        throw new IOException("Corrupt replay: op " + nextOp);
+                }
+                readHeader();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void readHeader() throws IOException {
+        if (in.available() == 0) {
+            finished = true;
+            return;
+        }
+        long delta = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            delta |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        nextTick += delta;
+        nextOp = in.readUnsignedByte();
+    }
+}
@@ -0,0 +1,32 @@
+// the same generator and sequence as java.util.Random, but with a state that snapshots can save and restore
+class Rng {
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    long state;
+
+    Rng(long seed) {
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    double nextDouble() {
+        return (((long) next(26) << 27) + next(27)) * 0x1.0p-53;
+    }
+
+    int nextInt(int bound) {
+        if (bound <= 0) throw new IllegalArgumentException("bound must be positive");
+        int r = next(31);
+        int m = bound - 1;
+        if ((bound & m) == 0) return (int) ((bound * (long) r) >> 31);
+        for (int u = r; u - (r = u % bound) + m < 0; u = next(31)) {
+            // reject values from the incomplete last range
+        }
+        return r;
+    }
+
+    private int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+}
@@ -0,0 +1,36 @@
+class ScriptedPlayer {
+    private static final int SWITCH_TICKS = 120;
+    private static final double KITE_DISTANCE = 120;
+
+    private long ticks = 0;
+
+    void act(Simulation sim) {
+        if (sim.isOver()) return;
+        if (ticks++ % SWITCH_TICKS == 0 && ticks > 1) {
+            sim.selectHero((sim.selectedHero + 1) % sim.heroes.size());
+        }
+
+        Hero h = sim.selected();
+        int nearest = sim.findNearestMonster(h);
+        if (nearest < 0) {
+            sim.setMove(0, 0);
+            return;
+        }
+
+        double dx = sim.monsters.x[nearest] - h.x;
+        double dy = sim.monsters.y[nearest] - h.y;
+        double dist = Math.sqrt(dx * dx + dy * dy);
+        if (dist < KITE_DISTANCE) {
+            sim.setMove(dx > 0 ? -1 : 1, dy > 0 ? -1 : 1);
+        } else {
+            sim.setMove(0, 0);
+        }
+
+        if (!h.canUseAbility()) return;
+        if (h.ability == AbilityType.FIREBALL
+                || (h.ability == AbilityType.STUN && dist <= 80)
+                || (h.ability == AbilityType.DASH && dist <= 60)) {
+            sim.triggerAbility();
+        }
+    }
+}
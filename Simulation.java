@@ -0,0 +1,544 @@
+import jdk.jfr.EventType;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+class Simulation {
+    // the world is larger than the view; GameRenderer follows the selected hero with a camera
+    static final int WIDTH = 1800;
+    static final int HEIGHT = 1080;
+    static final int ARENA_MARGIN = 30;
+    private static final double SPAWN_DISTANCE = 560;
+    static final double STEP = 1.0 / 60.0;
+    static final int SNAPSHOT_MAGIC = 0x53445353;
+    static final int SNAPSHOT_VERSION = 5;
+    private static final int FLOW_CELL = 48;
+    private static final int FLOW_INTERVAL = 4;
+    private static final double MONSTER_HIT_RADIUS = 14;
+    // spawn tables compiled up front; a game that gets further compiles the rest as it goes
+    private static final int PRECOMPILED_WAVES = 40;
+    // JFR events are objects; only create one per tick while a recording wants it
+    private static final EventType TICK_EVENT = EventType.getEventType(TickEvent.class);
+    private static final Color EXPLOSION_COLOR = new Color(255, 160, 80);
+    private static final Color EXPLOSION_RING_COLOR = new Color(255, 230, 180);
+
+    final long seed;
+    private final Rng rng;
+    private final Rng fxRng;
+    final WaveRules rules;
+    final Bestiary bestiary;
+    private final List<SpawnTable> spawnTables = new ArrayList<>();
+    InputRecorder recorder;
+
+    final List<Hero> heroes = new ArrayList<>();
+    final MonsterStore monsters = new MonsterStore(256);
+    final ProjectileStore projectiles = new ProjectileStore(WIDTH, HEIGHT, 64, 256);
+    final Profiler profiler = new Profiler();
+    final ParticleSystem effects = new ParticleSystem(4096, 512);
+    final CombatEvents events = new CombatEvents(4096);
+    private final int explosionColor = effects.colorIndex(EXPLOSION_COLOR);
+    private final int explosionRingColor = effects.colorIndex(EXPLOSION_RING_COLOR);
+    final Hero[] heroById;
+    private final SpatialGrid monsterGrid = new SpatialGrid(WIDTH, HEIGHT, 64, 8);
+    private final SpatialGrid heroGrid = new SpatialGrid(WIDTH, HEIGHT, 64, 8);
+    final FlowField flow = new FlowField(WIDTH, HEIGHT, FLOW_CELL);
+    private boolean flowDirty = true;
+    private final AiScheduler ai;
+    private final CombatResolver combat;
+    private final IntPredicate monsterAlive = m -> monsters.hp[m] > 0;
+    private final IntConsumer stunMonster = this::stunMonster;
+    private int stunningHero;
+    boolean effectsEnabled = true;
+    int dashTrailSteps = 12;
+    double flashTimer = 0;
+    private double shakeTimer = 0;
+    private double shakeMagnitude = 0;
+    double shakeX = 0;
+    double shakeY = 0;
+
+    int wave = 1;
+    int selectedHero = 0;
+    boolean waveActive = false;
+    int waveRemainingToSpawn = 0;
+    private double waveSpawnTimer = 0;
+    private double waveSpawnInterval = 0.4;
+    double intermissionTimer = 0;
+    long tickCount = 0;
+
+    private int moveX = 0;
+    private int moveY = 0;
+
+    Simulation() {
+        this(new WaveRules(), System.nanoTime());
+    }
+
+    Simulation(WaveRules rules, long seed) {
+        this.rules = rules;
+        this.seed = seed;
+        this.rng = new Rng(seed);
+        // cosmetic randomness has its own stream so effects on/off never changes gameplay
+        this.fxRng = new Rng(~seed);
+        this.bestiary = Bestiary.standard();
+        for (int w = 1; w <= PRECOMPILED_WAVES; w++) {
+            spawnTables.add(bestiary.compile(rules, w));
+        }
+        setWave(wave);
+        this.heroById = new Hero[bestiary.heroes.length];
+        this.ai = new AiScheduler(monsters, rules.aiReplanTicks);
+        this.combat = new CombatResolver(monsters, heroById, monsterGrid, heroGrid, flow, ai, events);
+        projectiles.events = events;
+        double cx = WIDTH / 2.0;
+        double cy = HEIGHT / 2.0;
+        for (int i = 0; i < heroById.length; i++) {
+            Hero h = bestiary.heroes[i].create(i, cx, cy);
+            heroes.add(h);
+            heroById[i] = h;
+            effects.colorIndex(h.color);
+        }
+    }
+
+    void start() {
+        startWave(wave);
+        rebuildSpatialIndex();
+        updateFlowField();
+    }
+
+    boolean isOver() {
+        return heroes.isEmpty();
+    }
+
+    Hero selected() {
+        if (heroes.isEmpty()) return null;
+        return heroes.get(Math.max(0, Math.min(selectedHero, heroes.size() - 1)));
+    }
+
+    void selectHero(int index) {
+        if (recorder != null) recorder.select(tickCount, index);
+        selectedHero = index;
+    }
+
+    void setMove(int dx, int dy) {
+        if (recorder != null) recorder.move(tickCount, dx, dy);
+        moveX = dx;
+        moveY = dy;
+    }
+
+    void tick() {
+        long allocatedBefore = profiler.allocated();
+        TickEvent event = TICK_EVENT.isEnabled() ? new TickEvent() : null;
+        if (event != null) event.begin();
+        long tickStart = profiler.start();
+        events.now = tickCount;
+
+        for (int i = 0; i < heroes.size(); i++) {
+            heroes.get(i).savePosition();
+        }
+        monsters.savePositions();
+
+        handleInput();
+        long t = profiler.lap(ProfilePhase.INPUT, tickStart);
+
+        for (int i = 0; i < heroes.size(); i++) {
+            heroes.get(i).update();
+        }
+        monsters.update();
+        t = profiler.lap(ProfilePhase.ENTITIES, t);
+
+        updateParticles();
+        t = profiler.lap(ProfilePhase.PARTICLES, t);
+        updateProjectiles();
+        t = profiler.lap(ProfilePhase.PROJECTILES, t);
+        if (monsters.count == 0) {
+            flowDirty = true;
+        } else if (flowDirty || tickCount % FLOW_INTERVAL == 0) {
+            updateFlowField();
+        }
+        t = profiler.lap(ProfilePhase.FLOW, t);
+        resolveCombat();
+        t = profiler.lap(ProfilePhase.COMBAT, t);
+        cleanupDead();
+        t = profiler.lap(ProfilePhase.CLEANUP, t);
+        updateWaveSystem();
+        t = profiler.lap(ProfilePhase.WAVES, t);
+        // monster slots only change in cleanup and spawns, so the index stays valid until the next tick ends
+        rebuildSpatialIndex();
+        profiler.lap(ProfilePhase.SPATIAL, t);
+        tickCount++;
+        if (recorder != null && tickCount % InputRecorder.CHECKSUM_INTERVAL == 0) {
+            recorder.checksum(tickCount, stateHash());
+        }
+
+        profiler.record(ProfilePhase.TICK, tickStart);
+        if (profiler.isEnabled()) {
+            profiler.heroes = heroes.size();
+            profiler.monsters = monsters.count;
+            profiler.projectiles = projectiles.count;
+            profiler.particles = effects.particleCount;
+            profiler.rings = effects.ringCount;
+        }
+        if (event != null) event.end();
+        if (event != null && event.shouldCommit()) {
+            event.tick = tickCount;
+            event.monsters = monsters.count;
+            event.projectiles = projectiles.count;
+            event.particles = effects.particleCount;
+            event.commit();
+        }
+        profiler.recordAllocation(ProfilePhase.TICK_ALLOC, allocatedBefore);
+    }
+
+    void rebuildSpatialIndex() {
+        monsterGrid.rebuild(monsters.x, monsters.y, monsters.count);
+    }
+
+    private void updateWaveSystem() {
+        if (waveActive) {
+            if (waveRemainingToSpawn > 0) {
+                waveSpawnTimer -= STEP;
+                if (waveSpawnTimer <= 0) {
+                    spawnWaveMonster();
+                    waveRemainingToSpawn--;
+                    waveSpawnTimer = waveSpawnInterval;
+                }
+            } else if (monsters.count == 0) {
+                waveActive = false;
+                intermissionTimer = 1.2;
+            }
+        } else {
+            if (intermissionTimer > 0) {
+                intermissionTimer -= STEP;
+            } else if (monsters.count == 0) {
+                setWave(wave + 1);
+                startWave(wave);
+            }
+        }
+    }
+
+    // the keyboard steers the selected hero; networked players steer their own through Hero.moveX/moveY
+    private void handleInput() {
+        Hero selected = selected();
+        for (int i = 0; i < heroes.size(); i++) {
+            Hero h = heroes.get(i);
+            if (h == selected && (moveX != 0 || moveY != 0)) {
+                move(h, moveX, moveY);
+            } else {
+                move(h, h.moveX, h.moveY);
+            }
+        }
+    }
+
+    private void move(Hero h, double dx, double dy) {
+        double speed = 2.2;
+        if (dx != 0 || dy != 0) {
+            double len = Math.sqrt(dx * dx + dy * dy);
+            dx /= len;
+            dy /= len;
+            h.setLastMove(dx, dy);
+            h.x += dx * speed;
+            h.y += dy * speed;
+            h.x = clamp(h.x, 40, WIDTH - 40);
+            h.y = clamp(h.y, 40, HEIGHT - 40);
+        }
+    }
+
+    void updateProjectiles() {
+        projectiles.update(monsters, monsterGrid, MONSTER_HIT_RADIUS);
+        for (int i = 0; i < projectiles.impactCount; i++) {
+            events.add(CombatEvents.EXPLOSION, -1, -1, 0, 0, projectiles.impactX[i], projectiles.impactY[i]);
+            spawnExplosion(projectiles.impactX[i], projectiles.impactY[i], explosionColor);
+        }
+    }
+
+    void updateParticles() {
+        effects.update();
+        if (flashTimer > 0) {
+            flashTimer = Math.max(0, flashTimer - STEP);
+        }
+        if (shakeTimer > 0) {
+            shakeTimer = Math.max(0, shakeTimer - STEP);
+            double t = Math.max(0.0, shakeTimer / 0.18);
+            double mag = shakeMagnitude * t;
+            shakeX = (fxRng.nextDouble() - 0.5) * mag;
+            shakeY = (fxRng.nextDouble() - 0.5) * mag;
+        } else {
+            shakeX = 0;
+            shakeY = 0;
+        }
+    }
+
+    // heroes move at most ~9px between refreshes, well inside a flow cell
+    void updateFlowField() {
+        flow.compute(heroes);
+        flowDirty = false;
+    }
+
+    // spreads the monster stage of combat over the pool once a wave is large enough; results are identical
+    void setParallel(ForkJoinPool pool) {
+        combat.pool = pool;
+    }
+
+    void resolveCombat() {
+        combat.resolve(heroes, tickCount);
+    }
+
+    void cleanupDead() {
+        monsters.removeDead();
+        // backwards, so removing keeps the order of the heroes still to visit
+        for (int i = heroes.size() - 1; i >= 0; i--) {
+            Hero h = heroes.get(i);
+            if (h.hp > 0) continue;
+            ai.heroDied(h.id);
+            heroes.remove(i);
+            flowDirty = true;
+        }
+        if (selectedHero >= heroes.size()) selectedHero = Math.max(0, heroes.size() - 1);
+    }
+
+    // monsters read their stats from the current wave's table, so this only happens with none alive
+    void setWave(int wave) {
+        this.wave = wave;
+        monsters.table = spawnTable(wave);
+    }
+
+    SpawnTable spawnTable(int wave) {
+        while (spawnTables.size() < wave) {
+            spawnTables.add(bestiary.compile(rules, spawnTables.size() + 1));
+        }
+        return spawnTables.get(wave - 1);
+    }
+
+    private void startWave(int wave) {
+        waveActive = true;
+        waveRemainingToSpawn = monsters.table.size();
+        waveSpawnInterval = rules.spawnInterval(wave);
+        waveSpawnTimer = 0;
+    }
+
+    // monsters appear out of view around the selected hero, pushed back inside the world near the edges
+    private void spawnWaveMonster() {
+        Hero h = selected();
+        if (h == null) return;
+        double angle = rng.nextDouble() * Math.PI * 2;
+        double distance = SPAWN_DISTANCE + rng.nextInt(300);
+        double x = clamp(h.x + Math.cos(angle) * distance, 40, WIDTH - 40);
+        double y = clamp(h.y + Math.sin(angle) * distance, 40, HEIGHT - 40);
+        SpawnTable table = monsters.table;
+        monsters.add(x, y, table.kind(table.size() - waveRemainingToSpawn));
+    }
+
+    // monster slots whose position falls inside the rectangle; used for view culling between ticks
+    void forEachMonsterIn(double x0, double y0, double x1, double y1, IntConsumer action) {
+        monsterGrid.forEachInRect(x0, y0, x1, y1, action);
+    }
+
+    // slot in monsters, or -1; only valid until the next tick
+    int findNearestMonster(Entity e) {
+        return monsterGrid.nearest(e.x, e.y, Double.MAX_VALUE, monsterAlive);
+    }
+
+    void setHeroMove(int heroId, int dx, int dy) {
+        Hero h = heroById[heroId];
+        h.moveX = Integer.signum(dx);
+        h.moveY = Integer.signum(dy);
+    }
+
+    void triggerAbility() {
+        if (recorder != null) recorder.ability(tickCount);
+        useAbility(selected());
+    }
+
+    void triggerAbility(int heroId) {
+        Hero h = heroById[heroId];
+        if (h.hp > 0) useAbility(h);
+    }
+
+    private void useAbility(Hero h) {
+        if (h == null || !h.canUseAbility()) return;
+
+        if (h.ability == AbilityType.DASH) {
+            double dx = h.lastDirX;
+            double dy = h.lastDirY;
+            if (dx == 0 && dy == 0) {
+                dx = 1;
+                dy = 0;
+            }
+            double startX = h.x;
+            double startY = h.y;
+            h.x += dx * 120;
+            h.y += dy * 120;
+            h.x = clamp(h.x, 40, WIDTH - 40);
+            h.y = clamp(h.y, 40, HEIGHT - 40);
+            spawnDashTrail(startX, startY, h.x, h.y, h.color);
+            abilityUsed(h);
+        } else if (h.ability == AbilityType.FIREBALL) {
+            int target = findNearestMonster(h);
+            if (target < 0) return;
+            double dx = monsters.x[target] - h.x;
+            double dy = monsters.y[target] - h.y;
+            double len = Math.sqrt(dx * dx + dy * dy);
+            if (len == 0) return;
+            dx /= len;
+            dy /= len;
+            int shots = rules.fireballShots;
+            for (int s = 0; s < shots; s++) {
+                // the aim rotated by this shot's share of the fan; a single shot flies straight
+                double angle = shots == 1 ? 0 : rules.fireballSpread * (s / (double) (shots - 1) - 0.5);
+                double cos = Math.cos(angle);
+                double sin = Math.sin(angle);
+                projectiles.add(h.x, h.y, (dx * cos - dy * sin) * 6.5, (dx * sin + dy * cos) * 6.5, 12, 28, rules.fireballPierce, h.id);
+            }
+            abilityUsed(h);
+        } else if (h.ability == AbilityType.STUN) {
+            double radius = 90;
+            stunningHero = h.id;
+            monsterGrid.forEachWithin(h.x, h.y, radius, stunMonster);
+            abilityUsed(h);
+        }
+    }
+
+    private void abilityUsed(Hero h) {
+        h.useAbility();
+        events.add(CombatEvents.ABILITY, h.id, -1, h.ability.ordinal(), 0, h.x, h.y);
+    }
+
+    private void stunMonster(int m) {
+        monsters.stun(m, 1.5);
+        events.add(CombatEvents.STUN, stunningHero, monsters.id(m), monsters.kind[m], 0, monsters.x[m], monsters.y[m]);
+    }
+
+    private void spawnDashTrail(double x1, double y1, double x2, double y2, Color base) {
+        if (!effectsEnabled) return;
+        int color = effects.colorIndex(base);
+        int steps = dashTrailSteps;
+        for (int i = 0; i <= steps; i++) {
+            double t = i / (double) steps;
+            double x = x1 + (x2 - x1) * t;
+            double y = y1 + (y2 - y1) * t;
+            double jitterX = (fxRng.nextDouble() - 0.5) * 6;
+            double jitterY = (fxRng.nextDouble() - 0.5) * 6;
+            effects.spawnParticle(x + jitterX, y + jitterY, 0, 0, 12, 0.35, color, 180);
+        }
+    }
+
+    void spawnExplosion(double x, double y, int color) {
+        if (!effectsEnabled) return;
+        flashTimer = Math.max(flashTimer, 0.18);
+        shakeTimer = Math.max(shakeTimer, 0.18);
+        shakeMagnitude = Math.max(shakeMagnitude, 10);
+        effects.spawnRing(x, y, 10, 44, 0.35, 3.5, explosionRingColor, 200);
+        effects.spawnRing(x, y, 6, 30, 0.28, 2.2, color, 190);
+        for (int i = 0; i < 18; i++) {
+            double angle = fxRng.nextDouble() * Math.PI * 2;
+            double speed = 1.2 + fxRng.nextDouble() * 2.0;
+            double vx = Math.cos(angle) * speed;
+            double vy = Math.sin(angle) * speed;
+            double size = 6 + fxRng.nextDouble() * 6;
+            effects.spawnParticle(x, y, vx, vy, size, 0.5 + fxRng.nextDouble() * 0.3, color, 200);
+        }
+    }
+
+    int snapshotBytes() {
+        return 3 * 4 + 8 + 8 + 5 * 4 + 2 + 6 * 8 + 2 * 8
+                + heroes.size() * (4 + Hero.SNAPSHOT_BYTES)
+                + monsters.snapshotBytes()
+                + projectiles.snapshotBytes()
+                + flow.snapshotBytes();
+    }
+
+    // everything a tick reads, written at out's position; taken between ticks. Particles are
+    // cosmetic and not saved, restoring clears them
+    void snapshot(ByteBuffer out) {
+        int start = out.position();
+        out.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putLong(seed);
+        out.putLong(tickCount);
+        out.putInt(wave).putInt(selectedHero).putInt(waveRemainingToSpawn).putInt(moveX).putInt(moveY);
+        out.put(waveActive ? (byte) 1 : 0).put(flowDirty ? (byte) 1 : 0);
+        out.putDouble(waveSpawnTimer).putDouble(waveSpawnInterval).putDouble(intermissionTimer);
+        out.putDouble(flashTimer).putDouble(shakeTimer).putDouble(shakeMagnitude);
+        out.putLong(rng.state).putLong(fxRng.state);
+
+        out.putInt(heroes.size());
+        for (int i = 0; i < heroes.size(); i++) {
+            Hero h = heroes.get(i);
+            out.putInt(h.id);
+            h.write(out);
+        }
+        monsters.write(out);
+        projectiles.write(out);
+        flow.write(out);
+        assert out.position() - start == snapshotBytes() : "snapshotBytes() is out of step with snapshot()";
+    }
+
+    void restore(ByteBuffer in) {
+        if (in.getInt() != SNAPSHOT_MAGIC) throw new IllegalArgumentException("Not a snapshot");
+        int version = in.getInt();
+        if (version != SNAPSHOT_VERSION) throw new IllegalArgumentException("Unsupported snapshot version " + version);
+        long snapshotSeed = in.getLong();
+        if (snapshotSeed != seed) throw new IllegalArgumentException("Snapshot belongs to another game (seed " + snapshotSeed + ")");
+        tickCount = in.getLong();
+        setWave(in.getInt());
+        selectedHero = in.getInt();
+        waveRemainingToSpawn = in.getInt();
+        moveX = in.getInt();
+        moveY = in.getInt();
+        waveActive = in.get() != 0;
+        flowDirty = in.get() != 0;
+        waveSpawnTimer = in.getDouble();
+        waveSpawnInterval = in.getDouble();
+        intermissionTimer = in.getDouble();
+        flashTimer = in.getDouble();
+        shakeTimer = in.getDouble();
+        shakeMagnitude = in.getDouble();
+        rng.state = in.getLong();
+        fxRng.state = in.getLong();
+
+        // dead heroes keep their objects in heroById, so a rewind can bring them back
+        heroes.clear();
+        int heroCount = in.getInt();
+        for (int i = 0; i < heroCount; i++) {
+            Hero h = heroById[in.getInt()];
+            h.read(in);
+            heroes.add(h);
+        }
+        monsters.read(in);
+        projectiles.read(in);
+        flow.read(in);
+
+        effects.clear();
+        events.clear();
+        shakeX = 0;
+        shakeY = 0;
+        rebuildSpatialIndex();
+    }
+
+    long stateHash() {
+        long h = tickCount;
+        h = 31 * h + wave;
+        h = 31 * h + waveRemainingToSpawn;
+        h = 31 * h + selectedHero;
+        for (Hero hero : heroes) {
+            h = 31 * h + Double.doubleToLongBits(hero.x);
+            h = 31 * h + Double.doubleToLongBits(hero.y);
+            h = 31 * h + hero.hp;
+        }
+        for (int i = 0; i < monsters.count; i++) {
+            h = 31 * h + Double.doubleToLongBits(monsters.x[i]);
+            h = 31 * h + Double.doubleToLongBits(monsters.y[i]);
+            h = 31 * h + monsters.hp[i];
+        }
+        for (int i = 0; i < projectiles.count; i++) {
+            h = 31 * h + Double.doubleToLongBits(projectiles.x[i]);
+            h = 31 * h + Double.doubleToLongBits(projectiles.y[i]);
+        }
+        return h;
+    }
+
+    private static double clamp(double v, double min, double max) {
+        return Math.max(min, Math.min(max, v));
+    }
+}
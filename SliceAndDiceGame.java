@@ -1,13 +1,83 @@
 import javax.swing.*;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
 
 public class SliceAndDiceGame {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "--headless".equals(args[0])) {
+            HeadlessRunner.main(args);
+            return;
+        }
+        if (args.length > 0 && "--serve".equals(args[0])) {
+            CoopServer.main(args);
+            return;
+        }
+        if (args.length > 0 && "--soak".equals(args[0])) {
+            CoopSoak.main(args);
+            return;
+        }
+
+        boolean active = false;
+        int buffers = 2;
+        int fps = GameLoop.displayRefreshRate();
+        long seed = System.nanoTime();
+        String record = null;
+        String replayFile = null;
+        String join = null;
+        boolean mute = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--active": active = true; break;
+                case "--buffers": buffers = Integer.parseInt(args[++i]); break;
+                case "--fps": fps = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--record": record = args[++i]; break;
+                case "--replay": replayFile = args[++i]; break;
+                case "--join": join = args[++i]; break;
+                case "--mute": mute = true; break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        if (join != null && (record != null || replayFile != null)) {
+            throw new IllegalArgumentException("--join can't be combined with --record or --replay");
+        }
+        ReplayPlayer replay = replayFile != null ? ReplayPlayer.load(Paths.get(replayFile)) : null;
+        CoopClient net = join != null ? connect(join) : null;
+        Simulation sim;
+        if (net != null) {
+            sim = net.mirror;
+        } else {
+            sim = replay != null ? replay.createSimulation() : new Simulation(new WaveRules(), seed);
+        }
+        sim.setParallel(ForkJoinPool.commonPool());
+        if (record != null) startRecording(sim, record);
+        AudioMixer audio = mute ? null : AudioMixer.open(new SoundBank(), 32);
+
+        boolean activeRendering = active;
+        int bufferCount = buffers;
+        int targetFps = fps;
         SwingUtilities.invokeLater(() -> {
             JFrame frame = new JFrame("Slice & Dice");
             frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
             frame.setResizable(false);
 
-            GamePanel panel = new GamePanel();
+            if (activeRendering) {
+                ActiveCanvas canvas = new ActiveCanvas(sim, replay, net, audio, bufferCount, targetFps);
+                frame.setIgnoreRepaint(true);
+                frame.add(canvas);
+                frame.pack();
+                frame.setLocationRelativeTo(null);
+                frame.setVisible(true);
+
+                canvas.start();
+                return;
+            }
+
+            GamePanel panel = new GamePanel(sim, replay, net, audio, targetFps);
             frame.setContentPane(panel);
             frame.pack();
             frame.setLocationRelativeTo(null);
@@ -16,4 +86,23 @@ public class SliceAndDiceGame {
             panel.start();
         });
     }
+
+    // host:port, host defaults to localhost
+    private static CoopClient connect(String address) throws IOException {
+        int colon = address.lastIndexOf(':');
+        String host = colon > 0 ? address.substring(0, colon) : "localhost";
+        int port = Integer.parseInt(address.substring(colon + 1));
+        CoopClient net = CoopClient.connect(new InetSocketAddress(host, port));
+        System.out.println("joined " + address + " as hero " + net.heroId);
+        return net;
+    }
+
+    private static void startRecording(Simulation sim, String file) throws IOException {
+        sim.recorder = new InputRecorder(Files.newOutputStream(Paths.get(file)), sim.seed, sim.rules);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            synchronized (sim) {
+                sim.recorder.finish(sim.tickCount, sim.stateHash());
+            }
+        }));
+    }
 }
@@ -0,0 +1,70 @@
+import java.nio.ByteBuffer;
+
+// the last N tick snapshots; buffers are reused and only grow when a snapshot outgrows its slot
+class SnapshotRing {
+    private final ByteBuffer[] slots;
+    private final long[] ticks;
+    private int next;
+    private int size;
+
+    SnapshotRing(int capacity) {
+        slots = new ByteBuffer[capacity];
+        ticks = new long[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void capture(Simulation sim) {
+        int needed = sim.snapshotBytes();
+        ByteBuffer slot = slots[next];
+        if (slot == null || slot.capacity() < needed) {
+            // headroom so a growing wave doesn't reallocate every tick
+            slot = ByteBuffer.allocateDirect(needed + needed / 2);
+            slots[next] = slot;
+        }
+        slot.clear();
+        sim.snapshot(slot);
+        slot.flip();
+        ticks[next] = sim.tickCount;
+        next = (next + 1) % slots.length;
+        size = Math.min(size + 1, slots.length);
+    }
+
+    // rolls the simulation back to the snapshot of the given tick and forgets everything newer,
+    // so resimulating from there captures over the discarded future
+    boolean restore(Simulation sim, long tick) {
+        for (int age = 0; age < size; age++) {
+            if (ticks[index(age)] == tick) {
+                restoreAt(sim, age);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // steps back up to `captures` snapshots, stopping at the oldest; returns the restored tick or -1
+    long rewind(Simulation sim, int captures) {
+        if (size == 0) return -1;
+        return restoreAt(sim, Math.min(captures, size - 1));
+    }
+
+    private long restoreAt(Simulation sim, int age) {
+        int i = index(age);
+        ByteBuffer slot = slots[i];
+        slot.rewind();
+        sim.restore(slot);
+        next = (i + 1) % slots.length;
+        size -= age;
+        return ticks[i];
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    private int index(int age) {
+        return Math.floorMod(next - 1 - age, slots.length);
+    }
+}
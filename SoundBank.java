@@ -0,0 +1,57 @@
+import java.util.Random;
+
+// every sound the game plays, decoded once into 16-bit mono PCM so the mixer only ever copies and
+// scales samples. There are no audio files: the sounds are synthesised here, from a fixed seed,
+// the first time the bank is built
+class SoundBank {
+    static final int SAMPLE_RATE = 44_100;
+
+    static final int HIT = 0;
+    static final int KILL = 1;
+    static final int EXPLOSION = 2;
+    static final int DASH = 3;
+    static final int FIREBALL = 4;
+    static final int STUN = 5;
+    static final int HURT = 6;
+    static final int DOWN = 7;
+    static final int COUNT = 8;
+
+    final short[][] samples = new short[COUNT][];
+
+    SoundBank() {
+        Random rng = new Random(7);
+        samples[HIT] = tone(0.06, 520, 260, 0.35, 0.5, rng);
+        samples[KILL] = tone(0.16, 880, 1320, 0.1, 0.45, rng);
+        samples[EXPLOSION] = tone(0.55, 90, 40, 0.9, 0.9, rng);
+        samples[DASH] = tone(0.18, 300, 900, 0.6, 0.4, rng);
+        samples[FIREBALL] = tone(0.3, 180, 520, 0.5, 0.55, rng);
+        samples[STUN] = tone(0.35, 1200, 600, 0.05, 0.45, rng);
+        samples[HURT] = tone(0.12, 160, 110, 0.25, 0.55, rng);
+        samples[DOWN] = tone(0.7, 440, 110, 0.15, 0.6, rng);
+    }
+
+    int length(int sound) {
+        return samples[sound].length;
+    }
+
+    // a square-ish wave sliding from one pitch to another, mixed with noise, with a short attack
+    // and an exponential decay
+    private static short[] tone(double seconds, double fromHz, double toHz, double noise, double gain, Random rng) {
+        int n = (int) (seconds * SAMPLE_RATE);
+        short[] out = new short[n];
+        double phase = 0;
+        double smoothed = 0;
+        int attack = SAMPLE_RATE / 500;
+        for (int i = 0; i < n; i++) {
+            double t = i / (double) n;
+            phase += (fromHz + (toHz - fromHz) * t) / SAMPLE_RATE;
+            double wave = Math.tanh(3 * Math.sin(2 * Math.PI * phase));
+            // low-passed noise sounds like a thud rather than hiss
+            smoothed += (rng.nextDouble() * 2 - 1 - smoothed) * 0.25;
+            double envelope = Math.min(1, i / (double) attack) * Math.exp(-5 * t);
+            double v = ((1 - noise) * wave + noise * smoothed * 2) * envelope * gain;
+            out[i] = (short) Math.round(Math.max(-1, Math.min(1, v)) * Short.MAX_VALUE);
+        }
+        return out;
+    }
+}
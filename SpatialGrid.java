@@ -0,0 +1,174 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+class SpatialGrid {
+    private final double cellSize;
+    private final int cols;
+    private final int rows;
+    private final double slack;
+
+    private final int[] cellStart;
+    private int[] itemCell = new int[64];
+    private int[] items = new int[64];
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private int size;
+
+    SpatialGrid(double width, double height, double cellSize, double slack) {
+        this.cellSize = cellSize;
+        this.cols = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        this.slack = slack;
+        this.cellStart = new int[cols * rows + 1];
+    }
+
+    // indexes items 0..count-1; queries read xs/ys live, so small moves after the rebuild are covered by the slack
+    void rebuild(double[] xs, double[] ys, int count) {
+        this.xs = xs;
+        this.ys = ys;
+        size = count;
+        if (itemCell.length < size) {
+            int cap = Math.max(size, itemCell.length * 2);
+            itemCell = new int[cap];
+            items = new int[cap];
+        }
+
+        Arrays.fill(cellStart, 0);
+        for (int i = 0; i < size; i++) {
+            int cell = cellOf(xs[i], ys[i]);
+            itemCell[i] = cell;
+            cellStart[cell + 1]++;
+        }
+        for (int c = 0; c < cols * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+
+        // counting sort: walk the items backwards so each cell keeps index order
+        for (int i = size - 1; i >= 0; i--) {
+            int slot = --cellStart[itemCell[i] + 1];
+            items[slot] = i;
+        }
+        // cellStart[c + 1] now holds the start of cell c; shift back into place
+        System.arraycopy(cellStart, 1, cellStart, 0, cols * rows);
+        cellStart[cols * rows] = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int nearest(double x, double y, double maxDist, IntPredicate filter) {
+        int cx = col(x);
+        int cy = row(y);
+        int maxRing = Math.max(cols, rows);
+        if (maxDist < Double.MAX_VALUE) {
+            maxRing = Math.min(maxRing, (int) Math.ceil((maxDist + slack) / cellSize) + 1);
+        }
+
+        int best = -1;
+        double bestSq = maxDist < Double.MAX_VALUE ? maxDist * maxDist : Double.MAX_VALUE;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            int y0 = cy - ring;
+            int y1 = cy + ring;
+            for (int gy = Math.max(0, y0); gy <= Math.min(rows - 1, y1); gy++) {
+                boolean edgeRow = gy == y0 || gy == y1;
+                int step = edgeRow ? 1 : 2 * ring;
+                for (int gx = cx - ring; gx <= cx + ring; gx += Math.max(1, step)) {
+                    if (gx < 0 || gx >= cols) continue;
+                    int cell = gy * cols + gx;
+                    for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                        int item = items[i];
+                        double dx = xs[item] - x;
+                        double dy = ys[item] - y;
+                        double d = dx * dx + dy * dy;
+                        if (d < bestSq && (filter == null || filter.test(item))) {
+                            bestSq = d;
+                            best = item;
+                        }
+                    }
+                }
+            }
+            if (best >= 0) {
+                double bound = ring * cellSize - slack;
+                if (bound > 0 && bestSq <= bound * bound) break;
+            }
+        }
+        return best;
+    }
+
+    void forEachWithin(double x, double y, double radius, IntConsumer action) {
+        double reach = radius + slack;
+        int x0 = col(x - reach);
+        int x1 = col(x + reach);
+        int y0 = row(y - reach);
+        int y1 = row(y + reach);
+        double rSq = radius * radius;
+        for (int gy = y0; gy <= y1; gy++) {
+            for (int gx = x0; gx <= x1; gx++) {
+                int cell = gy * cols + gx;
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                    int item = items[i];
+                    double dx = xs[item] - x;
+                    double dy = ys[item] - y;
+                    if (dx * dx + dy * dy <= rSq) action.accept(item);
+                }
+            }
+        }
+    }
+
+    void forEachInRect(double minX, double minY, double maxX, double maxY, IntConsumer action) {
+        int x0 = col(minX - slack);
+        int x1 = col(maxX + slack);
+        int y0 = row(minY - slack);
+        int y1 = row(maxY + slack);
+        for (int gy = y0; gy <= y1; gy++) {
+            for (int gx = x0; gx <= x1; gx++) {
+                int cell = gy * cols + gx;
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                    int item = items[i];
+                    double x = xs[item];
+                    double y = ys[item];
+                    if (x >= minX && x <= maxX && y >= minY && y <= maxY) action.accept(item);
+                }
+            }
+        }
+    }
+
+    int findOverlapping(double x, double y, double radius, double itemRadius, IntPredicate filter) {
+        double reach = radius + itemRadius + slack;
+        int x0 = col(x - reach);
+        int x1 = col(x + reach);
+        int y0 = row(y - reach);
+        int y1 = row(y + reach);
+        double hit = radius + itemRadius;
+        double hitSq = hit * hit;
+        for (int gy = y0; gy <= y1; gy++) {
+            for (int gx = x0; gx <= x1; gx++) {
+                int cell = gy * cols + gx;
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                    int item = items[i];
+                    double dx = xs[item] - x;
+                    double dy = ys[item] - y;
+                    if (dx * dx + dy * dy <= hitSq && (filter == null || filter.test(item))) return item;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private int cellOf(double x, double y) {
+        return row(y) * cols + col(x);
+    }
+
+    // entities outside the arena (spawning monsters) are clamped into the border cells
+    private int col(double x) {
+        int c = (int) Math.floor(x / cellSize);
+        return c < 0 ? 0 : (c >= cols ? cols - 1 : c);
+    }
+
+    private int row(double y) {
+        int r = (int) Math.floor(y / cellSize);
+        return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+    }
+}
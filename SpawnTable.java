@@ -0,0 +1,50 @@
+// one wave compiled before it is played: the kind of each spawn in order, and the stats each kind
+// has during the wave. A wave only starts once the last one's monsters are gone, so every live
+// monster reads its stats from the current table by kind
+class SpawnTable {
+    final int wave;
+    private final byte[] order;
+    final int[] maxHp;
+    final int[] damage;
+    final double[] range;
+    final double[] speed;
+    final double[] attackCooldown;
+
+    SpawnTable(Bestiary bestiary, WaveRules rules, int wave) {
+        this.wave = wave;
+        int kinds = bestiary.monsters.length;
+        maxHp = new int[kinds];
+        damage = new int[kinds];
+        range = new double[kinds];
+        speed = new double[kinds];
+        attackCooldown = new double[kinds];
+        for (int k = 0; k < kinds; k++) {
+            MonsterArchetype a = bestiary.monsters[k];
+            maxHp[k] = a.maxHp(rules, wave);
+            damage[k] = a.damage(rules, wave);
+            range[k] = a.range(rules, wave);
+            speed[k] = a.speed(maxHp[k]);
+            attackCooldown[k] = a.attackCooldown;
+        }
+
+        order = new byte[Math.max(0, rules.monsterCount(wave))];
+        for (int s = 0; s < order.length; s++) {
+            int kind = 0;
+            for (int r = 0; r < bestiary.spawnKind.length; r++) {
+                int every = bestiary.spawnEvery[r];
+                if (wave >= bestiary.spawnFrom[r] && s % every == every - 1) kind = bestiary.spawnKind[r];
+            }
+            order[s] = (byte) kind;
+        }
+        if (bestiary.boss >= 0 && rules.isBossWave(wave) && order.length > 0) order[order.length - 1] = (byte) bestiary.boss;
+    }
+
+    int size() {
+        return order.length;
+    }
+
+    // kind of the spawn-th monster of the wave
+    int kind(int spawn) {
+        return order[spawn];
+    }
+}
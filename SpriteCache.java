@@ -0,0 +1,153 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+class SpriteCache {
+    static final int HERO_ORIGIN_X = 24;
+    static final int HERO_ORIGIN_Y = 26;
+    private static final int HERO_W = 52;
+    private static final int HERO_H = 48;
+    static final int MONSTER_SIZE = 32;
+    private static final Color BAR_BACKGROUND = new Color(40, 40, 40);
+    private static final Color STUNNED = new Color(120, 180, 255);
+
+    private final GraphicsConfiguration gc;
+    private final Image[][] heroes = new Image[HeroKind.values().length][2];
+    // by kind, then stunned
+    private final Image[][] monsters;
+    private final Image heroBar;
+    private final Image heroBarFill;
+    private final Image monsterBar;
+    private final Image monsterBarFill;
+
+    SpriteCache(GraphicsConfiguration gc, Bestiary bestiary) {
+        this.gc = gc;
+        for (HeroKind kind : HeroKind.values()) {
+            heroes[kind.ordinal()][0] = renderHero(kind, false);
+            heroes[kind.ordinal()][1] = renderHero(kind, true);
+        }
+        monsters = new Image[bestiary.monsters.length][2];
+        for (int k = 0; k < monsters.length; k++) {
+            MonsterArchetype a = bestiary.monsters[k];
+            monsters[k][0] = renderMonster(a.shape, a.color);
+            monsters[k][1] = renderMonster(a.shape, STUNNED);
+        }
+        heroBar = renderBar(44, 6, BAR_BACKGROUND);
+        heroBarFill = renderBar(44, 6, new Color(80, 220, 140));
+        monsterBar = renderBar(40, 5, BAR_BACKGROUND);
+        monsterBarFill = renderBar(40, 5, new Color(255, 160, 120));
+    }
+
+    Image hero(HeroKind kind, boolean blink) {
+        return heroes[kind.ordinal()][blink ? 1 : 0];
+    }
+
+    Image monster(int kind, boolean stunned) {
+        return monsters[kind][stunned ? 1 : 0];
+    }
+
+    void drawHeroBar(Graphics2D g2, int x, int y, int hp, int maxHp) {
+        drawBar(g2, heroBar, heroBarFill, x, y, 44, 6, hp, maxHp);
+    }
+
+    void drawMonsterBar(Graphics2D g2, int x, int y, int hp, int maxHp) {
+        drawBar(g2, monsterBar, monsterBarFill, x, y, 40, 5, hp, maxHp);
+    }
+
+    private static void drawBar(Graphics2D g2, Image background, Image fillImage, int x, int y, int w, int h, int hp, int maxHp) {
+        g2.drawImage(background, x, y, null);
+        int fill = (int) Math.max(0, Math.min(w, (hp / (double) maxHp) * w));
+        if (fill > 0) g2.drawImage(fillImage, x, y, x + fill, y + h, 0, 0, fill, h, null);
+    }
+
+    private BufferedImage create(int w, int h) {
+        if (gc != null) return gc.createCompatibleImage(w, h, Transparency.TRANSLUCENT);
+        return new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private Graphics2D begin(BufferedImage image) {
+        Graphics2D g2 = image.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        return g2;
+    }
+
+    private Image renderMonster(MonsterArchetype.Shape shape, Color color) {
+        BufferedImage image = create(MONSTER_SIZE, MONSTER_SIZE);
+        Graphics2D g2 = begin(image);
+        g2.setColor(color);
+        int s = MONSTER_SIZE;
+        if (shape == MonsterArchetype.Shape.SQUARE) {
+            g2.fillRoundRect(2, 2, s - 4, s - 4, 8, 8);
+        } else if (shape == MonsterArchetype.Shape.DIAMOND) {
+            g2.fillPolygon(new int[] {s / 2, s, s / 2, 0}, new int[] {0, s / 2, s, s / 2}, 4);
+        } else {
+            g2.fillOval(0, 0, s, s);
+        }
+        g2.dispose();
+        return image;
+    }
+
+    private Image renderBar(int w, int h, Color color) {
+        BufferedImage image = create(w, h);
+        Graphics2D g2 = begin(image);
+        g2.setColor(color);
+        g2.fillRoundRect(0, 0, w, h, 4, 4);
+        g2.dispose();
+        return image;
+    }
+
+    private Image renderHero(HeroKind kind, boolean blink) {
+        BufferedImage image = create(HERO_W, HERO_H);
+        Graphics2D g2 = begin(image);
+        int cx = HERO_ORIGIN_X;
+        int cy = HERO_ORIGIN_Y;
+        Color color = kind.color;
+
+        g2.setColor(color.darker());
+        g2.fillRoundRect(cx - 12, cy - 10, 24, 26, 6, 6);
+        g2.setColor(new Color(240, 240, 245));
+        g2.fillOval(cx - 8, cy - 18, 16, 16);
+        drawFace(g2, cx, cy - 10, blink);
+
+        if (kind == HeroKind.TANK) {
+            g2.setColor(color);
+            g2.fillRoundRect(cx - 14, cy - 12, 28, 28, 8, 8);
+            g2.setColor(new Color(220, 230, 255));
+            g2.fillOval(cx - 5, cy - 10, 10, 10);
+            drawFace(g2, cx, cy - 10, blink);
+            g2.setColor(new Color(90, 120, 180));
+            g2.fillRoundRect(cx + 12, cy - 8, 10, 16, 4, 4);
+        } else if (kind == HeroKind.ROGUE) {
+            g2.setColor(color);
+            g2.fillRoundRect(cx - 10, cy - 12, 20, 22, 6, 6);
+            g2.setColor(new Color(60, 60, 60));
+            g2.fillOval(cx - 9, cy - 16, 18, 12);
+            drawFace(g2, cx, cy - 10, blink);
+            g2.setColor(new Color(200, 200, 200));
+            g2.fillRect(cx - 18, cy, 8, 2);
+            g2.fillRect(cx + 10, cy, 8, 2);
+        } else {
+            g2.setColor(color);
+            g2.fillRoundRect(cx - 10, cy - 12, 20, 24, 6, 6);
+            drawFace(g2, cx, cy - 10, blink);
+            g2.setColor(new Color(140, 80, 30));
+            g2.fillRect(cx + 12, cy - 18, 3, 30);
+            g2.setColor(new Color(255, 220, 140));
+            g2.fillOval(cx + 10, cy - 22, 8, 8);
+            g2.setColor(new Color(120, 60, 200));
+            g2.fillOval(cx - 8, cy - 16, 16, 10);
+        }
+        g2.dispose();
+        return image;
+    }
+
+    private static void drawFace(Graphics2D g2, int cx, int cy, boolean blink) {
+        g2.setColor(new Color(30, 30, 30));
+        if (blink) {
+            g2.drawLine(cx - 5, cy - 1, cx - 2, cy - 1);
+            g2.drawLine(cx + 2, cy - 1, cx + 5, cy - 1);
+        } else {
+            g2.fillOval(cx - 5, cy - 4, 3, 3);
+            g2.fillOval(cx + 2, cy - 4, 3, 3);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+class TextLayer {
+    private static final FontRenderContext FRC = new FontRenderContext(null, true, true);
+
+    private final GraphicsConfiguration gc;
+    private final Font font;
+    private final Color color;
+    private BufferedImage image;
+    private int ascent;
+    private long key = Long.MIN_VALUE;
+
+    TextLayer(GraphicsConfiguration gc, Font font, Color color) {
+        this.gc = gc;
+        this.font = font;
+        this.color = color;
+    }
+
+    // callers pack whatever the text depends on into key, so the string is only built on a change
+    boolean isStale(long key) {
+        return key != this.key;
+    }
+
+    void render(long key, String text) {
+        this.key = key;
+        Rectangle2D bounds = font.getStringBounds(text, FRC);
+        int w = (int) Math.ceil(bounds.getWidth()) + 2;
+        int h = (int) Math.ceil(bounds.getHeight()) + 2;
+        if (image == null || image.getWidth() < w || image.getHeight() < h) {
+            image = create(Math.max(w, image == null ? 0 : image.getWidth()), Math.max(h, image == null ? 0 : image.getHeight()));
+        }
+        ascent = (int) Math.ceil(-bounds.getY());
+
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            g.setComposite(AlphaComposite.SrcOver);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            // lay the glyphs out the way FRC measured them, or long strings overrun the image
+            g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+            g.setFont(font);
+            g.setColor(color);
+            g.drawString(text, 0, ascent);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    // x, baseline as for Graphics.drawString
+    void draw(Graphics2D g2, int x, int baseline) {
+        if (image != null) g2.drawImage(image, x, baseline - ascent, null);
+    }
+
+    private BufferedImage create(int w, int h) {
+        if (gc != null) return gc.createCompatibleImage(w, h, Transparency.TRANSLUCENT);
+        return new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+    }
+}
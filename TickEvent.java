@@ -0,0 +1,24 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("slicedice.Tick")
+@Label("Simulation Tick")
+@Category("Slice & Dice")
+@Description("One fixed-step update of the simulation")
+@StackTrace(false)
+class TickEvent extends jdk.jfr.Event {
+    @Label("Tick")
+    long tick;
+
+    @Label("Monsters")
+    int monsters;
+
+    @Label("Projectiles")
+    int projectiles;
+
+    @Label("Particles")
+    int particles;
+}
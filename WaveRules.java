@@ -0,0 +1,127 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+class WaveRules {
+    double countBase = 4;
+    double countPerWave = 2;
+    int bossEvery = 5;
+    double bossExtraCount = 4;
+    double intervalBase = 0.55;
+    double intervalPerWave = 0.02;
+    double intervalMin = 0.15;
+    double hpBase = 40;
+    double hpPerWave = 10;
+    double damageBase = 4;
+    double damagePerWave = 0.5;
+    double rangeBase = 42;
+    double rangePerWave = 2;
+    // each monster looks for the nearest hero once every aiReplanTicks ticks
+    int aiReplanTicks = 8;
+    // the mage's fireball: extra shots fan out over fireballSpread radians, each passes through
+    // fireballPierce monsters before it bursts
+    int fireballShots = 1;
+    int fireballPierce = 0;
+    double fireballSpread = 0.6;
+
+    boolean isBossWave(int wave) {
+        return bossEvery > 0 && wave % bossEvery == 0;
+    }
+
+    int monsterCount(int wave) {
+        double count = countBase + wave * countPerWave;
+        if (isBossWave(wave)) count += bossExtraCount;
+        return (int) count;
+    }
+
+    double spawnInterval(int wave) {
+        return Math.max(intervalMin, intervalBase - wave * intervalPerWave);
+    }
+
+    // the curve every monster kind scales by its archetype in the bestiary
+    double monsterHp(int wave) {
+        return hpBase + wave * hpPerWave;
+    }
+
+    double monsterDamage(int wave) {
+        return damageBase + (int) (wave * damagePerWave);
+    }
+
+    double monsterRange(int wave) {
+        return rangeBase + wave * rangePerWave;
+    }
+
+    WaveRules copy() {
+        WaveRules r = new WaveRules();
+        r.countBase = countBase;
+        r.countPerWave = countPerWave;
+        r.bossEvery = bossEvery;
+        r.bossExtraCount = bossExtraCount;
+        r.intervalBase = intervalBase;
+        r.intervalPerWave = intervalPerWave;
+        r.intervalMin = intervalMin;
+        r.hpBase = hpBase;
+        r.hpPerWave = hpPerWave;
+        r.damageBase = damageBase;
+        r.damagePerWave = damagePerWave;
+        r.rangeBase = rangeBase;
+        r.rangePerWave = rangePerWave;
+        r.aiReplanTicks = aiReplanTicks;
+        r.fireballShots = fireballShots;
+        r.fireballPierce = fireballPierce;
+        r.fireballSpread = fireballSpread;
+        return r;
+    }
+
+    void write(DataOutput out) throws IOException {
+        double[] values = {countBase, countPerWave, bossEvery, bossExtraCount, intervalBase, intervalPerWave, intervalMin,
+                hpBase, hpPerWave, damageBase, damagePerWave, rangeBase, rangePerWave, aiReplanTicks,
+                fireballShots, fireballPierce, fireballSpread};
+        for (double v : values) out.writeDouble(v);
+    }
+
+    static WaveRules read(DataInput in) throws IOException {
+        WaveRules r = new WaveRules();
+        r.countBase = in.readDouble();
+        r.countPerWave = in.readDouble();
+        r.bossEvery = (int) in.readDouble();
+        r.bossExtraCount = in.readDouble();
+        r.intervalBase = in.readDouble();
+        r.intervalPerWave = in.readDouble();
+        r.intervalMin = in.readDouble();
+        r.hpBase = in.readDouble();
+        r.hpPerWave = in.readDouble();
+        r.damageBase = in.readDouble();
+        r.damagePerWave = in.readDouble();
+        r.rangeBase = in.readDouble();
+        r.rangePerWave = in.readDouble();
+        r.aiReplanTicks = (int) in.readDouble();
+        r.fireballShots = (int) in.readDouble();
+        r.fireballPierce = (int) in.readDouble();
+        r.fireballSpread = in.readDouble();
+        return r;
+    }
+
+    void set(String name, double value) {
+        switch (name) {
+            case "countBase": countBase = value; break;
+            case "countPerWave": countPerWave = value; break;
+            case "bossEvery": bossEvery = (int) value; break;
+            case "bossExtraCount": bossExtraCount = value; break;
+            case "intervalBase": intervalBase = value; break;
+            case "intervalPerWave": intervalPerWave = value; break;
+            case "intervalMin": intervalMin = value; break;
+            case "hpBase": hpBase = value; break;
+            case "hpPerWave": hpPerWave = value; break;
+            case "damageBase": damageBase = value; break;
+            case "damagePerWave": damagePerWave = value; break;
+            case "rangeBase": rangeBase = value; break;
+            case "rangePerWave": rangePerWave = value; break;
+            case "aiReplanTicks": aiReplanTicks = Math.max(1, (int) value); break;
+            case "fireballShots": fireballShots = Math.max(1, (int) value); break;
+            case "fireballPierce": fireballPierce = Math.max(0, (int) value); break;
+            case "fireballSpread": fireballSpread = value; break;
+            default: throw new IllegalArgumentException("Unknown wave rule: " + name);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Locale;
+
+// plays scripted games and fails when steady-state ticks or frames allocate more than their budget,
+// so the allocation-free hot path stays that way; run by `mvn -Pbench test`
+class AllocationBudget {
+    // mean bytes; Java2D allocates a little inside drawImage and when stroking rings, none of it
+    // ours to remove
+    private double tickBudget = 0;
+    private double frameBudget = 512;
+    private double audioBudget = 0;
+    private int warmupTicks = 30_000;
+    private int ticks = 30_000;
+    private long seed = 1;
+
+    private Simulation sim;
+    private ScriptedPlayer player;
+    private ActiveCanvas canvas;
+    private final BufferedImage image = new BufferedImage(GameRenderer.VIEW_WIDTH, GameRenderer.VIEW_HEIGHT, BufferedImage.TYPE_INT_RGB);
+    // the frames' combat sounds, mixed offline a tick's worth at a time
+    private final AudioMixer mixer = new AudioMixer(new SoundBank(), 32);
+    private final short[] pcm = new short[SoundBank.SAMPLE_RATE / 60 * AudioMixer.CHANNELS];
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        AllocationBudget b = new AllocationBudget();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-tick": b.tickBudget = Double.parseDouble(args[++i]); break;
+                case "-frame": b.frameBudget = Double.parseDouble(args[++i]); break;
+                case "-audio": b.audioBudget = Double.parseDouble(args[++i]); break;
+                case "-warmup": b.warmupTicks = Integer.parseInt(args[++i]); break;
+                case "-ticks": b.ticks = Integer.parseInt(args[++i]); break;
+                case "-seed": b.seed = Long.parseLong(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (!AllocationMeter.isSupported()) {
+            System.out.println("allocation budget skipped: this JVM has no per-thread allocation counter");
+            return;
+        }
+        if (!b.run()) System.exit(1);
+    }
+
+    private boolean run() {
+        newGame();
+        for (int i = 0; i < warmupTicks; i++) {
+            step();
+            if (i % 4 == 0) paint();
+            mix();
+        }
+
+        long tickBytes = 0;
+        long tickMax = 0;
+        int allocatingTicks = 0;
+        long frameBytes = 0;
+        long frameMax = 0;
+        long audioBytes = 0;
+        long audioMax = 0;
+        for (int i = 0; i < ticks; i++) {
+            // a new game allocates a new world, that's not the hot path
+            if (sim.isOver()) newGame();
+            long before = AllocationMeter.allocated();
+            step();
+            long bytes = AllocationMeter.allocated() - before;
+            tickBytes += bytes;
+            tickMax = Math.max(tickMax, bytes);
+            if (bytes > 0) allocatingTicks++;
+
+            bytes = paint();
+            frameBytes += bytes;
+            frameMax = Math.max(frameMax, bytes);
+
+            bytes = mix();
+            audioBytes += bytes;
+            audioMax = Math.max(audioMax, bytes);
+        }
+
+        double tickMean = tickBytes / (double) ticks;
+        double frameMean = frameBytes / (double) ticks;
+        double audioMean = audioBytes / (double) ticks;
+        boolean ok = tickMean <= tickBudget && frameMean <= frameBudget && audioMean <= audioBudget;
+        System.out.printf(Locale.ROOT, "tick   %10.1f B mean %8d B max %6d of %d ticks allocated   budget %.1f%n",
+                tickMean, tickMax, allocatingTicks, ticks, tickBudget);
+        System.out.printf(Locale.ROOT, "frame  %10.1f B mean %8d B max   budget %.1f%n", frameMean, frameMax, frameBudget);
+        System.out.printf(Locale.ROOT, "audio  %10.1f B mean %8d B max   budget %.1f   %d voices stolen%n",
+                audioMean, audioMax, audioBudget, mixer.stolen());
+        System.out.println(ok ? "allocation budget OK" : "ALLOCATION BUDGET EXCEEDED");
+        return ok;
+    }
+
+    private void newGame() {
+        sim = new Simulation(new WaveRules(), seed++);
+        sim.start();
+        player = new ScriptedPlayer();
+        canvas = new ActiveCanvas(sim, null, null, mixer, 2, 60);
+        // the first frame builds the background and sprite caches
+        paint();
+    }
+
+    private void step() {
+        if (sim.isOver()) return;
+        player.act(sim);
+        sim.tick();
+    }
+
+    private long mix() {
+        long before = AllocationMeter.allocated();
+        mixer.render(pcm, pcm.length / AudioMixer.CHANNELS);
+        return AllocationMeter.allocated() - before;
+    }
+
+    // a frame as ActiveCanvas draws it, the renderer plus the frame stats; creating the Graphics
+    // isn't counted, the buffer strategy hands out one it already made
+    private long paint() {
+        Graphics2D g2 = image.createGraphics();
+        try {
+            long before = AllocationMeter.allocated();
+            long begin = System.nanoTime();
+            canvas.paintFrame(g2, 0.5);
+            canvas.recordFrame(begin, System.nanoTime());
+            return AllocationMeter.allocated() - before;
+        } finally {
+            g2.dispose();
+        }
+    }
+}
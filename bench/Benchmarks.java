@@ -0,0 +1,184 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+class Benchmarks {
+    private static final int[] MONSTER_COUNTS = {10, 100, 1_000, 10_000};
+    private static final int PROJECTILES_IN_FLIGHT = 5_000;
+
+    private static volatile long sink;
+
+    interface Op {
+        void run();
+    }
+
+    private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private int warmupIterations = 5;
+    private int iterations = 5;
+    private long iterationNanos = 500_000_000L;
+    private String filter;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        Benchmarks b = new Benchmarks();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-wi": b.warmupIterations = Integer.parseInt(args[++i]); break;
+                case "-i": b.iterations = Integer.parseInt(args[++i]); break;
+                case "-t": b.iterationNanos = Long.parseLong(args[++i]) * 1_000_000L; break;
+                default: b.filter = args[i];
+            }
+        }
+        b.runAll();
+    }
+
+    private void runAll() {
+        System.out.printf(Locale.ROOT, "%-22s %7s %14s %9s %12s %10s%n", "benchmark", "monsters", "ns/op", "error", "B/op", "MB/s");
+
+        for (int n : MONSTER_COUNTS) {
+            Simulation sim = arena(n);
+            Random rng = new Random(n);
+            int explosion = sim.effects.colorIndex(new Color(255, 160, 80));
+            BufferedImage image = new BufferedImage(GameRenderer.VIEW_WIDTH, GameRenderer.VIEW_HEIGHT, BufferedImage.TYPE_INT_RGB);
+            GameRenderer renderer = new GameRenderer(sim);
+
+            run("rebuildSpatialIndex", n, sim::rebuildSpatialIndex);
+            run("updateParticles", n, () -> {
+                if (sim.effects.particleCount < 512) sim.spawnExplosion(rng.nextInt(Simulation.WIDTH), rng.nextInt(Simulation.HEIGHT), explosion);
+                sim.updateParticles();
+            });
+            run("updateProjectiles", n, () -> {
+                while (sim.projectiles.count < 16) {
+                    sim.projectiles.add(40, 60 + rng.nextInt(Simulation.HEIGHT - 120), 6.5, 0, 12, 0, 0, 2);
+                }
+                sim.updateProjectiles();
+            });
+            // a volley that pierces everything, crossing the arena in every direction until it leaves
+            run("updateProjectiles5k", n, () -> {
+                while (sim.projectiles.count < PROJECTILES_IN_FLIGHT) {
+                    double angle = rng.nextDouble() * 2 * Math.PI;
+                    sim.projectiles.add(40 + rng.nextInt(Simulation.WIDTH - 80), 40 + rng.nextInt(Simulation.HEIGHT - 80),
+                            Math.cos(angle) * 6.5, Math.sin(angle) * 6.5, 12, 0, Integer.MAX_VALUE, 2);
+                }
+                sim.updateProjectiles();
+            });
+            sim.projectiles.clear();
+            run("updateFlowField", n, sim::updateFlowField);
+            run("resolveCombat", n, sim::resolveCombat);
+            sim.setParallel(ForkJoinPool.commonPool());
+            run("resolveCombatParallel", n, sim::resolveCombat);
+            sim.setParallel(null);
+            ByteBuffer snapshot = ByteBuffer.allocateDirect(sim.snapshotBytes() * 2);
+            run("snapshotRestore", n, () -> {
+                snapshot.clear();
+                sim.snapshot(snapshot);
+                snapshot.flip();
+                sim.restore(snapshot);
+            });
+            run("cleanupDead", n, sim::cleanupDead);
+            run("tick", n, sim::tick);
+            run("paintComponent", n, () -> {
+                Graphics2D g2 = image.createGraphics();
+                try {
+                    g2.setColor(new Color(24, 26, 32));
+                    g2.fillRect(0, 0, GameRenderer.VIEW_WIDTH, GameRenderer.VIEW_HEIGHT);
+                    renderer.render(g2, 0.5, false);
+                } finally {
+                    g2.dispose();
+                }
+            });
+            sink += sim.monsters.count;
+        }
+
+        Simulation sim = arena(0);
+        int explosion = sim.effects.colorIndex(new Color(255, 160, 80));
+        run("spawnExplosion", 0, () -> {
+            if (sim.effects.particleCount + 18 > sim.effects.particleCapacity) sim.effects.clear();
+            sim.spawnExplosion(450, 270, explosion);
+        });
+        sink += sim.effects.particleCount;
+
+        // every sound retriggered each block, so the voices stay full and stealing runs constantly
+        AudioMixer mixer = new AudioMixer(new SoundBank(), 32);
+        short[] pcm = new short[AudioMixer.BLOCK * AudioMixer.CHANNELS];
+        Random rng = new Random(1);
+        run("mixAudio", 0, () -> {
+            for (int s = 0; s < SoundBank.COUNT; s++) {
+                mixer.play(s, 0.5, rng.nextDouble() * 2 - 1);
+            }
+            mixer.render(pcm, AudioMixer.BLOCK);
+        });
+        sink += pcm[0];
+    }
+
+    // heroes and monsters are unkillable and monsters deal no damage, so the population stays fixed
+    private static Simulation arena(int monsters) {
+        WaveRules rules = new WaveRules();
+        rules.damageBase = 0;
+        rules.damagePerWave = 0;
+        rules.rangeBase = 40;
+        Simulation sim = new Simulation(rules, System.nanoTime());
+        Random rng = new Random(42);
+        int grunt = sim.bestiary.monster("grunt");
+        for (Hero h : sim.heroes) {
+            h.maxHp = Integer.MAX_VALUE;
+            h.hp = Integer.MAX_VALUE;
+        }
+        for (int i = 0; i < monsters; i++) {
+            double x = 40 + rng.nextDouble() * (Simulation.WIDTH - 80);
+            double y = 60 + rng.nextDouble() * (Simulation.HEIGHT - 100);
+            int slot = sim.monsters.slot(sim.monsters.add(x, y, grunt));
+            sim.monsters.hp[slot] = Integer.MAX_VALUE;
+        }
+        sim.rebuildSpatialIndex();
+        return sim;
+    }
+
+    private void run(String name, int monsters, Op op) {
+        if (filter != null && !name.contains(filter)) return;
+
+        for (int i = 0; i < warmupIterations; i++) {
+            measure(op);
+        }
+        double[] nsPerOp = new double[iterations];
+        double bytesPerOp = 0;
+        double mbPerSecond = 0;
+        for (int i = 0; i < iterations; i++) {
+            double[] r = measure(op);
+            nsPerOp[i] = r[0];
+            bytesPerOp += r[1] / iterations;
+            mbPerSecond += r[2] / iterations;
+        }
+
+        double mean = 0;
+        for (double v : nsPerOp) mean += v / iterations;
+        double variance = 0;
+        for (double v : nsPerOp) variance += (v - mean) * (v - mean) / Math.max(1, iterations - 1);
+        System.out.printf(Locale.ROOT, "%-22s %7d %14.1f %8.1f%% %12.1f %10.1f%n",
+                name, monsters, mean, 100 * Math.sqrt(variance) / mean, bytesPerOp, mbPerSecond);
+    }
+
+    private double[] measure(Op op) {
+        long thread = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long deadline = start + iterationNanos;
+        long ops = 0;
+        long now;
+        do {
+            for (int i = 0; i < 16; i++) {
+                op.run();
+            }
+            ops += 16;
+            now = System.nanoTime();
+        } while (now < deadline);
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+        long elapsed = now - start;
+        return new double[] {elapsed / (double) ops, allocated / (double) ops, allocated / 1e6 / (elapsed / 1e9)};
+    }
+}